@@ -0,0 +1,74 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the stylesheet into what is sent to the page, by stylesheet size.
+ * Run with -prof gc: bytes allocated per operation matter as much as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CSSPayloadBenchmark {
+
+    @Param({"10", "500", "5120"})
+    public int cssKB;
+
+    private byte[] css;
+    private byte[] critical;
+    private String config;
+
+    @Setup
+    public void setUp() {
+        css = PayloadFixtures.stylesheet(cssKB);
+        critical = PayloadFixtures.critical(css);
+        config = PayloadFixtures.config(100);
+    }
+
+    @Benchmark
+    public byte[] readAsset() throws IOException {
+        return InjectionCore.readFully(new ByteArrayInputStream(css), css.length);
+    }
+
+    @Benchmark
+    public String contentHash() {
+        return InjectionPayloadCache.contentHash(css);
+    }
+
+    @Benchmark
+    public String cssInjectionScript() {
+        return InjectionCore.buildCSSInjectionScript(css);
+    }
+
+    @Benchmark
+    public String combinedInjectionScript() {
+        return InjectionCore.buildCombinedInjectionScript(config, PayloadFixtures.BACKGROUND_COLOR, css, null, null);
+    }
+
+    @Benchmark
+    public String combinedInjectionScriptWithCritical() {
+        return InjectionCore.buildCombinedInjectionScript(config, PayloadFixtures.BACKGROUND_COLOR, css, null, critical);
+    }
+
+    @Benchmark
+    public String documentStartScript() {
+        return InjectionCore.buildDocumentStartScript(config, PayloadFixtures.BACKGROUND_COLOR, css, critical);
+    }
+}
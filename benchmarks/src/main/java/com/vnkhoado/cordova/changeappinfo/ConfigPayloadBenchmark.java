@@ -0,0 +1,55 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the config scripts by config size; the stylesheet stays at 10 KB.
+ * Run with -prof gc to see the allocation per script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigPayloadBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int configKeys;
+
+    private String config;
+    private byte[] css;
+
+    @Setup
+    public void setUp() {
+        config = PayloadFixtures.config(configKeys);
+        css = PayloadFixtures.stylesheet(10);
+    }
+
+    @Benchmark
+    public String configInjectionScript() {
+        return InjectionCore.buildConfigInjectionScript(config);
+    }
+
+    @Benchmark
+    public String configInlineScript() {
+        return InjectionCore.buildConfigInlineScript(config);
+    }
+
+    @Benchmark
+    public String combinedInjectionScript() {
+        return InjectionCore.buildCombinedInjectionScript(config, PayloadFixtures.BACKGROUND_COLOR, css, null, null);
+    }
+}
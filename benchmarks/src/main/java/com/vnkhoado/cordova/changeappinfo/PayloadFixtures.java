@@ -0,0 +1,72 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deterministic stylesheets and configs shaped like the ones the hooks bundle
+ */
+final class PayloadFixtures {
+
+    static final String BACKGROUND_COLOR = "#1A1A2E";
+
+    private PayloadFixtures() {
+    }
+
+    /**
+     * Minified stylesheet of about kb kilobytes: plain rules, media queries,
+     * quoted strings and non-ASCII content like a real CDN sheet
+     */
+    static byte[] stylesheet(int kb) {
+        StringBuilder css = new StringBuilder(kb * 1024 + 256);
+        for (int rule = 0; css.length() < kb * 1024; rule++) {
+            switch (rule % 4) {
+                case 0:
+                    css.append(".btn-").append(rule).append("{color:#").append(Integer.toHexString(0x100000 + rule))
+                        .append(";padding:4px 8px;border-radius:4px}");
+                    break;
+                case 1:
+                    css.append("@media (min-width:768px){.col-").append(rule).append("{flex:0 0 50%;max-width:50%}}");
+                    break;
+                case 2:
+                    css.append(".icon-").append(rule).append("::before{content:\"\\201C\";font-family:'Inter',sans-serif}");
+                    break;
+                default:
+                    css.append(".label-").append(rule).append("::after{content:\"Tiếp tục\"}");
+                    break;
+            }
+        }
+        return css.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * First-view part of a stylesheet, as extracted at build time (capped at 20 KB)
+     */
+    static byte[] critical(byte[] stylesheet) {
+        int length = Math.min(stylesheet.length, 20 * 1024);
+        String css = new String(stylesheet, 0, length, StandardCharsets.UTF_8);
+        return css.substring(0, css.lastIndexOf('}') + 1).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * cordova-build-config.json with the given number of keys
+     */
+    static String config(int keys) {
+        StringBuilder json = new StringBuilder(keys * 48);
+        json.append("{\"appName\":\"Benchmark\",\"backgroundColor\":\"").append(BACKGROUND_COLOR).append('"');
+        for (int key = 0; key < keys; key++) {
+            json.append(",\"feature_").append(key).append("\":");
+            switch (key % 3) {
+                case 0:
+                    json.append("\"https://api.example.com/v1/resource/").append(key).append('"');
+                    break;
+                case 1:
+                    json.append(key % 2 == 0);
+                    break;
+                default:
+                    json.append("\"Xin chào \\\"").append(key).append("\\\" </script>\"");
+                    break;
+            }
+        }
+        return json.append('}').toString();
+    }
+}
@@ -27,6 +27,7 @@ const {
   hexToRgb,
   findAllFiles
 } = require('../utils');
+const { compileRules, rewriteFiles, formatHits } = require('./color-rewriter');
 
 const colors = {
   reset: '\x1b[0m',
@@ -112,55 +113,46 @@ function generateColorVariations(oldColorHex, newColorHex) {
 }
 
 /**
- * Replace color in file content with safety checks
+ * Compile variations into one rewriting pass (matched case-insensitively, in order)
  */
-function replaceColorsInFile(filePath, variations) {
-  try {
-    let content = fs.readFileSync(filePath, 'utf8');
-    const originalContent = content;
-    let replacementCount = 0;
-
-    for (const variation of variations) {
-      // Escape special regex characters
-      const escaped = variation.old.replace(/[.*+?^${}()|[\]\\]/g, '\\$&');
-      
-      // Create regex with word boundary if needed (prevent ## or other edge cases)
-      let regex;
-      if (variation.wordBoundary) {
-        // Use negative lookbehind to prevent ## (if old starts with #)
-        if (variation.old.startsWith('#')) {
-          // Prevent ##HEX - don't match if preceded by #
-          regex = new RegExp(`(?<!#)${escaped}(?!#)`, 'gi');
-        } else {
-          // Regular word boundary
-          regex = new RegExp(`\\b${escaped}\\b`, 'gi');
-        }
-      } else {
-        // No boundary needed (for RGB functions, etc.)
-        regex = new RegExp(escaped, 'gi');
-      }
-      
-      const matches = content.match(regex);
-      
-      if (matches) {
-        replacementCount += matches.length;
-        content = content.replace(regex, variation.new);
+function buildReplacementPass(variations, oldColorHex, newColorHex) {
+  const oldHex = normalizeHexColor(oldColorHex).substring(1).toLowerCase();
+  const newHex = normalizeHexColor(newColorHex).substring(1).toUpperCase();
+  const escape = (value) => value.replace(/[.*+?^${}()|[\]\\]/g, '\\$&');
+
+  const rules = [
+    // Safety: collapse ## (double hash). A bare hex right after it is still recolored.
+    {
+      name: 'double_hash',
+      pattern: '##([0-9A-Fa-f]{6})',
+      replacement: (match, hex, offset, input) => {
+        const next = input.charAt(offset + match.length);
+        return '#' + (hex.toLowerCase() === oldHex && !/\w/.test(next) ? newHex : hex);
       }
     }
+  ];
 
-    // Final cleanup: Fix any ## that might have been created
-    content = content.replace(/##([0-9A-Fa-f]{6})/g, '#$1');
-
-    if (content !== originalContent) {
-      fs.writeFileSync(filePath, content, 'utf8');
-      return replacementCount;
+  const patterns = [];
+  for (const variation of variations) {
+    const escaped = escape(variation.old);
+    let pattern = escaped;
+    if (variation.wordBoundary) {
+      // Prevent ##HEX - don't match if preceded by #; otherwise a regular word boundary
+      pattern = variation.old.startsWith('#') ? `(?<!#)${escaped}(?!#)` : `\\b${escaped}\\b`;
     }
 
-    return 0;
-  } catch (error) {
-    console.error(`Error processing ${filePath}:`, error.message);
-    return -1; // Error
+    // Replaced one after another, a variation never hits if an earlier one has the
+    // same pattern or is unbounded text inside it (e.g. "rgb(...)" after the bare RGB triple)
+    const oldLower = variation.old.toLowerCase();
+    const shadowed = patterns.some((earlier) => earlier.pattern.toLowerCase() === pattern.toLowerCase() ||
+      (!earlier.wordBoundary && oldLower.includes(earlier.old.toLowerCase())));
+    patterns.push({ pattern, old: variation.old, wordBoundary: variation.wordBoundary });
+    if (!shadowed) {
+      rules.push({ name: variation.type, pattern, replacement: variation.new });
+    }
   }
+
+  return compileRules(rules, 'i');
 }
 
 function aggressiveColorReplace(context) {
@@ -202,21 +194,21 @@ function aggressiveColorReplace(context) {
 
     log(colors.reset, `📁 Found ${files.length} files to process\n`);
 
+    // Every file is scanned once for all variations and written only if it changed
+    const pass = buildReplacementPass(variations, oldColor, newColor);
+    const results = rewriteFiles(files, pass);
+
     let totalReplacements = 0;
-    let processedFiles = 0;
     let filesWithChanges = 0;
+    const processedFiles = results.length;
 
-    for (const filePath of files) {
-      const replacements = replaceColorsInFile(filePath, variations);
-
-      if (replacements > 0) {
+    for (const result of results) {
+      if (result.changed) {
         filesWithChanges++;
-        totalReplacements += replacements;
-        const relativePath = filePath.replace(androidPath, '');
-        log(colors.green, `   ✅ ${relativePath} (${replacements} replacements)`);
+        totalReplacements += result.total;
+        const relativePath = result.file.replace(androidPath, '');
+        log(colors.green, `   ✅ ${relativePath} (${result.total} replacements: ${formatHits(result.hits)})`);
       }
-
-      processedFiles++;
     }
 
     // Summary
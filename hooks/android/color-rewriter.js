@@ -0,0 +1,165 @@
+#!/usr/bin/env node
+
+/**
+ * Color Rewriter Utility
+ * Shared rewriting stage for the Android color hooks:
+ * - All rules of a pass are compiled into one alternation regex, so a file is
+ *   scanned once no matter how many colors/names are being replaced
+ * - Each file is read once (through the build context) and written only when
+ *   its content actually changed, so untouched resources keep their mtime and
+ *   Gradle does not rebuild them
+ * - Reports hit counts per file and per rule
+ *
+ * Rules: { name, pattern, replacement, insert, once }
+ * - pattern: RegExp or regex source; must not use numbered backreferences (\1)
+ * - replacement: string ($1, $&, $<name> expanded) or function(match, ...groups, offset, input)
+ * - insert: optional text added before </resources> when the rule had no hit
+ * - once: replace only the first match, like String.replace with a non-global regex;
+ *   later matches are left as they are and not counted
+ *
+ * Usage:
+ *   const { compileRules, rewriteFile } = require('./color-rewriter');
+ *   const pass = compileRules([{ name: 'splash', pattern: '<color name="splash">[^<]*</color>', replacement: '...' }]);
+ *   const result = rewriteFile(filePath, pass); // { file, hits, inserted, total, changed }
+ */
+
+const fs = require('fs');
+const buildContext = require('../utils/build-context');
+
+/**
+ * Compile rules into a single matcher. flags apply to every rule ('g' is implied).
+ */
+function compileRules(rules, flags = '') {
+  const baseFlags = flags.replace(/[gy]/g, '');
+  const compiled = rules.map((rule, index) => {
+    const source = rule.pattern instanceof RegExp ? rule.pattern.source : rule.pattern;
+    return {
+      name: rule.name,
+      group: `rule${index}`,
+      source,
+      // Re-run at the matched offset to get the rule's own capture groups
+      regex: new RegExp(source, baseFlags + 'y'),
+      replacement: rule.replacement,
+      literal: typeof rule.replacement === 'string' && !rule.replacement.includes('$'),
+      insert: rule.insert || null,
+      once: rule.once === true
+    };
+  });
+
+  return {
+    rules: compiled,
+    matcher: compiled.length > 0
+      ? new RegExp(compiled.map((rule) => `(?<${rule.group}>${rule.source})`).join('|'), baseFlags + 'g')
+      : null
+  };
+}
+
+function expandTemplate(template, match) {
+  return template.replace(/\$(\$|&|\d{1,2}|<([^>]+)>)/g, (token, ref, name) => {
+    if (ref === '$') return '$';
+    if (ref === '&') return match[0];
+    if (name) return (match.groups && match.groups[name]) || '';
+    return match[Number(ref)] || '';
+  });
+}
+
+/**
+ * Apply a compiled pass to content in one scan.
+ * Returns { content, hits: { ruleName: replacements }, inserted: [ruleName], total }
+ */
+function rewriteContent(content, pass) {
+  const hits = {};
+  const inserted = [];
+  let total = 0;
+  let output = content;
+
+  if (pass.matcher) {
+    output = content.replace(pass.matcher, (...args) => {
+      const groups = args[args.length - 1];
+      const offset = args[args.length - 3];
+      const rule = pass.rules.find((candidate) => groups[candidate.group] !== undefined);
+      if (rule.once && hits[rule.name]) {
+        return args[0];
+      }
+
+      hits[rule.name] = (hits[rule.name] || 0) + 1;
+      total++;
+
+      if (rule.literal) {
+        return rule.replacement;
+      }
+      rule.regex.lastIndex = offset;
+      const match = rule.regex.exec(content);
+      return typeof rule.replacement === 'function'
+        ? String(rule.replacement(...match, offset, content))
+        : expandTemplate(rule.replacement, match);
+    });
+  }
+
+  for (const rule of pass.rules) {
+    if (rule.insert && !hits[rule.name] && output.includes('</resources>')) {
+      output = output.replace('</resources>', `${rule.insert}\n</resources>`);
+      inserted.push(rule.name);
+      total++;
+    }
+  }
+
+  return { content: output, hits, inserted, total };
+}
+
+/**
+ * Rewrite one file with a compiled pass. Writes only if the content changed.
+ * options.write replaces fs.writeFileSync (e.g. utils.safeWriteFile for backups).
+ * Returns { file, hits, inserted, total, changed } or null if the file cannot be read.
+ */
+function rewriteFile(filePath, pass, options = {}) {
+  let content;
+  try {
+    content = buildContext.readTextFile(filePath);
+  } catch (error) {
+    return null;
+  }
+
+  const result = rewriteContent(content, pass);
+  const changed = result.content !== content;
+  if (changed) {
+    buildContext.writeTextFile(filePath, result.content, options.write);
+  }
+  return { file: filePath, hits: result.hits, inserted: result.inserted, total: result.total, changed };
+}
+
+/**
+ * Rewrite many files with the same pass; errors are reported per file
+ */
+function rewriteFiles(files, pass, options = {}) {
+  const results = [];
+  for (const file of files) {
+    try {
+      const result = rewriteFile(file, pass, options);
+      if (result) {
+        results.push(result);
+      }
+    } catch (error) {
+      console.error(`Error processing ${file}:`, error.message);
+      results.push({ file, hits: {}, inserted: [], total: 0, changed: false, error });
+    }
+  }
+  return results;
+}
+
+/**
+ * "name×2, other×1" for logs; with inserted, "name×2, added missing"
+ */
+function formatHits(hits, inserted = []) {
+  return Object.keys(hits).map((name) => `${name}×${hits[name]}`)
+    .concat(inserted.map((name) => `added ${name}`))
+    .join(', ');
+}
+
+module.exports = {
+  compileRules,
+  rewriteContent,
+  rewriteFile,
+  rewriteFiles,
+  formatHits
+};
@@ -23,6 +23,7 @@
 const fs = require('fs');
 const path = require('path');
 const { getConfigParser } = require('../utils');
+const { compileRules, rewriteFile, formatHits } = require('./color-rewriter');
 
 /**
  * Find MainActivity.java in the project
@@ -167,6 +168,20 @@ function updateManifestBackground(manifestPath, backgroundColor) {
   return false;
 }
 
+/**
+ * Rules forcing the named colors to backgroundColor, adding any that are missing.
+ * Only the first definition of a name is replaced, as before the shared rewriter.
+ */
+function namedColorRules(colorNames, backgroundColor) {
+  return colorNames.map((colorName) => ({
+    name: colorName,
+    pattern: `<color name="${colorName}">([^<]*)</color>`,
+    replacement: () => `<color name="${colorName}">${backgroundColor}</color>`,
+    insert: `    <color name="${colorName}">${backgroundColor}</color>`,
+    once: true
+  }));
+}
+
 /**
  * Ensure all color files have matching background
  */
@@ -177,71 +192,28 @@ function syncAllColorFiles(root, backgroundColor) {
     return;
   }
   
-  // Update cdv_colors.xml
+  // Update cdv_colors.xml - ensure all background-related colors match
   const cdvColorsPath = path.join(resPath, 'cdv_colors.xml');
   if (fs.existsSync(cdvColorsPath)) {
-    let content = fs.readFileSync(cdvColorsPath, 'utf8');
-    
-    // Ensure all background-related colors match
-    const colorNames = [
+    const result = rewriteFile(cdvColorsPath, compileRules(namedColorRules([
       'cdv_splashscreen_background_color',
       'cdv_background_color',
       'splash_background',
       'webview_background'
-    ];
+    ], backgroundColor)));
     
-    let modified = false;
-    for (const colorName of colorNames) {
-      const regex = new RegExp(`<color name="${colorName}">([^<]*)</color>`);
-      if (regex.test(content)) {
-        const oldContent = content;
-        content = content.replace(regex, `<color name="${colorName}">${backgroundColor}</color>`);
-        if (oldContent !== content) modified = true;
-      } else {
-        // Add if missing
-        content = content.replace(
-          '</resources>',
-          `    <color name="${colorName}">${backgroundColor}</color>\n</resources>`
-        );
-        modified = true;
-      }
-    }
-    
-    if (modified) {
-      fs.writeFileSync(cdvColorsPath, content, 'utf8');
-      console.log('   ✅ Synchronized all color definitions');
+    if (result && result.changed) {
+      console.log(`   ✅ Synchronized all color definitions (${formatHits(result.hits, result.inserted)})`);
     }
   }
   
   // Update colors.xml (legacy)
   const colorsPath = path.join(resPath, 'colors.xml');
   if (fs.existsSync(colorsPath)) {
-    let content = fs.readFileSync(colorsPath, 'utf8');
-    
-    const colorNames = [
+    rewriteFile(colorsPath, compileRules(namedColorRules([
       'splash_background',
       'webview_background'
-    ];
-    
-    let modified = false;
-    for (const colorName of colorNames) {
-      const regex = new RegExp(`<color name="${colorName}">([^<]*)</color>`);
-      if (regex.test(content)) {
-        const oldContent = content;
-        content = content.replace(regex, `<color name="${colorName}">${backgroundColor}</color>`);
-        if (oldContent !== content) modified = true;
-      } else {
-        content = content.replace(
-          '</resources>',
-          `    <color name="${colorName}">${backgroundColor}</color>\n</resources>`
-        );
-        modified = true;
-      }
-    }
-    
-    if (modified) {
-      fs.writeFileSync(colorsPath, content, 'utf8');
-    }
+    ], backgroundColor)));
   }
 }
 
@@ -255,33 +227,25 @@ function updateThemeFiles(root, backgroundColor) {
     return;
   }
   
+  // Update all windowBackground references
+  const pass = compileRules([
+    {
+      name: 'windowBackground',
+      pattern: '<item name="(?:android:)?windowBackground">([^<]*)</item>',
+      replacement: '<item name="android:windowBackground">@color/splash_background</item>'
+    }
+  ]);
+  
   const themeFiles = ['cdv_themes.xml', 'themes.xml', 'styles.xml'];
   
   for (const themeFile of themeFiles) {
     const themePath = path.join(resPath, themeFile);
     
     if (fs.existsSync(themePath)) {
-      let content = fs.readFileSync(themePath, 'utf8');
-      let modified = false;
-      
-      // Update all windowBackground references
-      const patterns = [
-        /<item name="android:windowBackground">([^<]*)<\/item>/g,
-        /<item name="windowBackground">([^<]*)<\/item>/g
-      ];
-      
-      for (const pattern of patterns) {
-        const oldContent = content;
-        content = content.replace(
-          pattern,
-          '<item name="android:windowBackground">@color/splash_background</item>'
-        );
-        if (oldContent !== content) modified = true;
-      }
+      const result = rewriteFile(themePath, pass);
       
-      if (modified) {
-        fs.writeFileSync(themePath, content, 'utf8');
-        console.log(`   ✅ Updated ${themeFile}`);
+      if (result && result.changed) {
+        console.log(`   ✅ Updated ${themeFile} (${formatHits(result.hits)})`);
       }
     }
   }
@@ -27,13 +27,13 @@ const path = require('path');
 const {
   readColorConfigFromXml,
   normalizeHexColor,
-  readXmlFile,
   writeXmlFile,
   createCdvColorsTemplate,
   createCdvThemesTemplate,
   log,
   colors
 } = require('./utils');
+const { compileRules, rewriteFile, formatHits } = require('./color-rewriter');
 
 function fixAndroidSplashFlicker(context) {
   const root = context.opts.projectRoot;
@@ -67,62 +67,52 @@ function fixAndroidSplashFlicker(context) {
   
   log(colors.reset, '\n📄 Processing cdv_colors.xml:');
   
-  let colorContent = readXmlFile(cdvColorsPath);
-  
-  if (!colorContent) {
+  if (!fs.existsSync(cdvColorsPath)) {
     // File doesn't exist, create it with newColor from config
     log(colors.yellow, `   ⚠️  File not found, creating new cdv_colors.xml...`);
-    colorContent = createCdvColorsTemplate(newColor);
     
-    if (writeXmlFile(cdvColorsPath, colorContent)) {
+    if (writeXmlFile(cdvColorsPath, createCdvColorsTemplate(newColor))) {
       log(colors.green, `   ✅ Created cdv_colors.xml with color: ${newColor}`);
       fixedColors = true;
     } else {
       log(colors.red, `   ❌ Failed to create cdv_colors.xml`);
     }
   } else {
-    // File exists, replace old color with new color
+    // File exists, replace old color with new color (adding it if missing)
     try {
-      const originalContent = colorContent;
-      
-      // Pattern to find and replace splash color
-      const splashColorPattern = /<color\s+name="cdv_splashscreen_background_color">([^<]*)<\/color>/;
-      const splashColorMatch = colorContent.match(splashColorPattern);
+      let previousColor = null;
+      const result = rewriteFile(cdvColorsPath, compileRules([
+        {
+          name: 'cdv_splashscreen_background_color',
+          pattern: '<color\\s+name="cdv_splashscreen_background_color">([^<]*)</color>',
+          replacement: (match, currentColor) => {
+            previousColor = normalizeHexColor(currentColor.trim());
+            return `<color name="cdv_splashscreen_background_color">${newColor}</color>`;
+          },
+          insert: `    <color name="cdv_splashscreen_background_color">${newColor}</color>`,
+          once: true
+        }
+      ]));
       
-      if (splashColorMatch) {
-        const currentColor = splashColorMatch[1].trim();
-        const normalizedCurrentColor = normalizeHexColor(currentColor);
-        
-        // Replace with new color from config
-        colorContent = colorContent.replace(
-          splashColorPattern,
-          `<color name="cdv_splashscreen_background_color">${newColor}</color>`
-        );
-        
-        if (normalizedCurrentColor !== newColor) {
-          log(colors.green, `   ✅ Updated splash color: "${normalizedCurrentColor}" → "${newColor}"`);
+      if (!result) {
+        log(colors.red, `   ❌ Could not read cdv_colors.xml`);
+      } else if (previousColor === null) {
+        if (result.changed) {
+          log(colors.green, `   ✅ Added splash color: "${newColor}"`);
           fixedColors = true;
         } else {
-          log(colors.green, `   ✅ Splash color already correct: ${newColor}`);
+          log(colors.yellow, `   ⚠️  No </resources> found, splash color not added`);
         }
+      } else if (previousColor !== newColor) {
+        log(colors.green, `   ✅ Updated splash color: "${previousColor}" → "${newColor}"`);
+        fixedColors = true;
       } else {
-        // Color doesn't exist, add it
-        const insertPoint = colorContent.indexOf('</resources>');
-        if (insertPoint !== -1) {
-          colorContent = colorContent.substring(0, insertPoint) +
-            `    <color name="cdv_splashscreen_background_color">${newColor}</color>\n` +
-            colorContent.substring(insertPoint);
-          log(colors.green, `   ✅ Added splash color: "${newColor}"`);
-          fixedColors = true;
-        }
+        log(colors.green, `   ✅ Splash color already correct: ${newColor}`);
       }
       
-      // Write back if changed
-      if (colorContent !== originalContent) {
-        if (writeXmlFile(cdvColorsPath, colorContent)) {
-          log(colors.green, `   ✅ cdv_colors.xml saved successfully`);
-        }
-      } else {
+      if (result && result.changed) {
+        log(colors.green, `   ✅ cdv_colors.xml saved successfully (${formatHits(result.hits, result.inserted)})`);
+      } else if (result) {
         log(colors.green, `   ✅ cdv_colors.xml already correct`);
       }
       
@@ -138,14 +128,11 @@ function fixAndroidSplashFlicker(context) {
   
   log(colors.reset, '\n🎨 Processing cdv_themes.xml:');
   
-  let themeContent = readXmlFile(cdvThemesPath);
-  
-  if (!themeContent) {
+  if (!fs.existsSync(cdvThemesPath)) {
     // File doesn't exist, create it
     log(colors.yellow, `   ⚠️  File not found, creating new cdv_themes.xml...`);
-    themeContent = createCdvThemesTemplate();
     
-    if (writeXmlFile(cdvThemesPath, themeContent)) {
+    if (writeXmlFile(cdvThemesPath, createCdvThemesTemplate())) {
       log(colors.green, `   ✅ Created cdv_themes.xml`);
     } else {
       log(colors.red, `   ❌ Failed to create cdv_themes.xml`);
@@ -153,28 +140,21 @@ function fixAndroidSplashFlicker(context) {
   } else {
     // File exists, ensure it references the color correctly
     try {
-      const originalContent = themeContent;
-      
-      // Ensure theme references correct color variable
-      const themeColorPattern = /<item\s+name="android:windowBackground">([^<]*)<\/item>/g;
+      const result = rewriteFile(cdvThemesPath, compileRules([
+        {
+          name: 'windowBackground',
+          pattern: '<item\\s+name="android:windowBackground">([^<]*)</item>',
+          replacement: '<item name="android:windowBackground">@color/cdv_splashscreen_background_color</item>'
+        }
+      ]));
       
-      if (themeColorPattern.test(themeContent)) {
-        themeContent = themeContent.replace(
-          themeColorPattern,
-          '<item name="android:windowBackground">@color/cdv_splashscreen_background_color</item>'
-        );
+      if (result && result.changed) {
         log(colors.green, `   ✅ Theme window background: Uses cdv_splashscreen_background_color`);
-      } else {
+        log(colors.green, `   ✅ cdv_themes.xml saved successfully (${formatHits(result.hits)})`);
+      } else if (result) {
         log(colors.green, `   ✅ cdv_themes.xml already correct`);
       }
       
-      // Write back if changed
-      if (themeContent !== originalContent) {
-        if (writeXmlFile(cdvThemesPath, themeContent)) {
-          log(colors.green, `   ✅ cdv_themes.xml saved successfully`);
-        }
-      }
-      
     } catch (error) {
       log(colors.red, `   ❌ Error updating cdv_themes.xml: ${error.message}`);
     }
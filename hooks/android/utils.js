@@ -2,6 +2,7 @@
 
 const fs = require('fs');
 const path = require('path');
+const buildContext = require('../utils/build-context');
 
 const colors = {
   reset: '\x1b[0m',
@@ -59,7 +60,7 @@ function readColorConfigFromXml(configPath) {
   }
 
   try {
-    const content = fs.readFileSync(configPath, 'utf8');
+    const content = buildContext.readTextFile(configPath);
     
     // Read OLD_COLOR (Cordova default to replace)
     const oldColorMatch = content.match(
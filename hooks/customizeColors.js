@@ -19,6 +19,7 @@ const {
   hexToRgb,
   safeWriteFile 
 } = require('./utils');
+const { compileRules, rewriteFile, formatHits } = require('./android/color-rewriter');
 
 /**
  * Known splash background color names - ONLY these will be replaced
@@ -86,73 +87,48 @@ function getStylesPath(root) {
  * UPDATED: Supports both old and new Cordova file naming
  */
 function customizeAndroidColors(root, backgroundColor, webviewBackgroundColor) {
-  // 1. Update colors.xml or cdv_colors.xml - ONLY named splash colors
+  // 1. Update colors.xml or cdv_colors.xml - ONLY named splash colors, one scan for all names
   const colorsPath = getColorsPath(root);
   
   if (colorsPath && fs.existsSync(colorsPath)) {
-    let colors = fs.readFileSync(colorsPath, 'utf8');
-    let updated = false;
+    const rules = [];
     
     if (backgroundColor) {
-      // Replace ONLY splash-named colors
+      // Replace ONLY splash-named colors (also turns cdv_splashscreen_background's
+      // @color/cdv_background_color reference into a direct color)
       for (const colorName of SPLASH_COLOR_NAMES) {
-        const regex = new RegExp(
-          `<color name="${colorName}">[^<]*</color>`,
-          'i'
-        );
-        
-        if (colors.match(regex)) {
-          colors = colors.replace(
-            regex,
-            `<color name="${colorName}">${backgroundColor}</color>`
-          );
-          console.log(`   ✓ Updated ${colorName}`);
-          updated = true;
-        }
-      }
-      
-      // Add splash_background if not exists
-      if (!colors.includes('splash_background')) {
-        colors = colors.replace(
-          '</resources>',
-          `    <color name="splash_background">${backgroundColor}</color>\n</resources>`
-        );
-        console.log(`   ✓ Added splash_background`);
-        updated = true;
-      }
-      
-      // Fix cdv_splashscreen_background to use direct color instead of reference
-      if (colors.includes('cdv_splashscreen_background')) {
-        colors = colors.replace(
-          /<color name="cdv_splashscreen_background">@color\/cdv_background_color<\/color>/i,
-          `<color name="cdv_splashscreen_background">${backgroundColor}</color>`
-        );
-        console.log(`   ✓ Fixed cdv_splashscreen_background reference`);
-        updated = true;
+        rules.push({
+          name: colorName,
+          pattern: `<color name="${colorName}">[^<]*</color>`,
+          replacement: () => `<color name="${colorName}">${backgroundColor}</color>`,
+          // Add splash_background if not exists
+          insert: colorName === 'splash_background'
+            ? `    <color name="splash_background">${backgroundColor}</color>`
+            : null,
+          // First definition only, as before the shared rewriter
+          once: true
+        });
       }
     }
     
     if (webviewBackgroundColor) {
       // Add or update webview_background
-      if (!colors.includes('webview_background')) {
-        colors = colors.replace(
-          '</resources>',
-          `    <color name="webview_background">${webviewBackgroundColor}</color>\n</resources>`
-        );
-        console.log(`   ✓ Added webview_background`);
-      } else {
-        colors = colors.replace(
-          /<color name="webview_background">[^<]*<\/color>/i,
-          `<color name="webview_background">${webviewBackgroundColor}</color>`
-        );
-        console.log(`   ✓ Updated webview_background`);
-      }
-      updated = true;
+      rules.push({
+        name: 'webview_background',
+        pattern: '<color name="webview_background">[^<]*</color>',
+        replacement: () => `<color name="webview_background">${webviewBackgroundColor}</color>`,
+        insert: `    <color name="webview_background">${webviewBackgroundColor}</color>`,
+        once: true
+      });
     }
     
-    if (updated) {
-      safeWriteFile(colorsPath, colors);
-      console.log(`   📝 Saved ${path.basename(colorsPath)}`);
+    const result = rewriteFile(colorsPath, compileRules(rules, 'i'), { write: safeWriteFile });
+    if (result) {
+      Object.keys(result.hits).forEach((colorName) => console.log(`   ✓ Updated ${colorName}`));
+      result.inserted.forEach((colorName) => console.log(`   ✓ Added ${colorName}`));
+      if (result.changed) {
+        console.log(`   📝 Saved ${path.basename(colorsPath)}`);
+      }
     }
   } else {
     console.log('   ⚠️  No colors file found (colors.xml or cdv_colors.xml)');
@@ -162,60 +138,43 @@ function customizeAndroidColors(root, backgroundColor, webviewBackgroundColor) {
   const stylesPath = getStylesPath(root);
   
   if (stylesPath && fs.existsSync(stylesPath) && backgroundColor) {
-    let styles = fs.readFileSync(stylesPath, 'utf8');
-    let updated = false;
-    
     // Update AppTheme.Launcher to use @color/splash_background
-    if (styles.includes('AppTheme.Launcher')) {
-      const launcherRegex = /(<style name="AppTheme\.Launcher"[^>]*>)(.*?)(<\/style>)/s;
-      const launcherMatch = styles.match(launcherRegex);
-      
-      if (launcherMatch) {
-        let themeContent = launcherMatch[2];
-        
-        if (themeContent.includes('android:windowBackground')) {
-          // Replace with color reference
-          themeContent = themeContent.replace(
-            /<item name="android:windowBackground">[^<]*<\/item>/,
-            `<item name="android:windowBackground">@color/splash_background</item>`
-          );
-          styles = styles.replace(launcherRegex, `$1${themeContent}$3`);
-          console.log(`   ✓ Updated AppTheme.Launcher to use @color/splash_background`);
-          updated = true;
-        }
+    const result = rewriteFile(stylesPath, compileRules([
+      {
+        name: 'AppTheme.Launcher',
+        pattern: '(<style name="AppTheme\\.Launcher"[^>]*>)(.*?)(</style>)',
+        replacement: (match, open, themeContent, close) => open + themeContent.replace(
+          /<item name="android:windowBackground">[^<]*<\/item>/,
+          `<item name="android:windowBackground">@color/splash_background</item>`
+        ) + close
       }
-    }
+    ], 's'), { write: safeWriteFile });
     
-    if (updated) {
-      safeWriteFile(stylesPath, styles);
+    if (result && result.changed) {
+      console.log(`   ✓ Updated AppTheme.Launcher to use @color/splash_background`);
       console.log(`   📝 Saved ${path.basename(stylesPath)}`);
     }
   } else if (!stylesPath) {
     console.log('   ⚠️  No styles/themes file found');
   }
   
-  // 3. Update splash.xml drawable
+  // 3. Update splash.xml drawable - replace solid colors with color reference
   const splashXmlPath = path.join(
     root,
     'platforms/android/app/src/main/res/drawable/splash.xml'
   );
   
   if (backgroundColor && fs.existsSync(splashXmlPath)) {
-    let splash = fs.readFileSync(splashXmlPath, 'utf8');
-    let updated = false;
-    
-    // Replace solid colors with color reference
-    if (splash.includes('<solid')) {
-      splash = splash.replace(
-        /<solid android:color="[^"]*"/g,
-        `<solid android:color="@color/splash_background"`
-      );
-      console.log(`   ✓ Updated splash.xml to use @color/splash_background`);
-      updated = true;
-    }
+    const result = rewriteFile(splashXmlPath, compileRules([
+      {
+        name: 'solid',
+        pattern: '<solid android:color="[^"]*"',
+        replacement: '<solid android:color="@color/splash_background"'
+      }
+    ]), { write: safeWriteFile });
     
-    if (updated) {
-      safeWriteFile(splashXmlPath, splash);
+    if (result && result.changed) {
+      console.log(`   ✓ Updated splash.xml to use @color/splash_background (${formatHits(result.hits)})`);
       console.log(`   📝 Saved splash.xml`);
     }
   }
@@ -2,10 +2,38 @@
 
 const fs = require('fs');
 const path = require('path');
-const https = require('https');
-const http = require('http');
+const crypto = require('crypto');
 const url = require('url');
 const utils = require('./utils');
+const downloader = require('./utils/download-cache');
+const buildContext = require('./utils/build-context');
+const cssOptimizer = require('./utils/css-optimizer');
+
+// Fonts and images referenced by the stylesheet, stored as <content-hash>.<ext>
+const CDN_ASSETS_DIR = 'cdn';
+const CDN_MANIFEST = 'manifest.json';
+
+// Rules for the first view, applied before the full stylesheet
+const CRITICAL_CSS_FILE = 'cdn-styles.critical.css';
+// First bytes of a full stylesheet that has a critical part next to it;
+// native code only looks for the critical file when it sees this
+const CRITICAL_MARKER = '/*cssinjector:critical*/';
+const DEFAULT_SPLIT_THRESHOLD_KB = 100;
+
+const CONTENT_TYPES = {
+  '.woff2': 'font/woff2',
+  '.woff': 'font/woff',
+  '.ttf': 'font/ttf',
+  '.otf': 'font/otf',
+  '.eot': 'application/vnd.ms-fontobject',
+  '.svg': 'image/svg+xml',
+  '.png': 'image/png',
+  '.jpg': 'image/jpeg',
+  '.jpeg': 'image/jpeg',
+  '.gif': 'image/gif',
+  '.webp': 'image/webp',
+  '.css': 'text/css'
+};
 
 module.exports = function(context) {
   return downloadCDNResourcesAsync(context);
@@ -19,6 +47,7 @@ async function downloadCDNResourcesAsync(context) {
   const projectRoot = context.opts.projectRoot;
   const assetsDir = path.join(projectRoot, 'www', 'assets');
   const cssFilePath = path.join(assetsDir, 'cdn-styles.css');
+  const criticalFilePath = path.join(assetsDir, CRITICAL_CSS_FILE);
 
   console.log('\n📥 [CDN-DOWNLOAD] Downloading CSS from CDN for runtime injection...\n');
 
@@ -56,12 +85,24 @@ async function downloadCDNResourcesAsync(context) {
     // Download CSS content
     try {
       console.log('   Downloading CSS...');
-      const cssContent = await downloadFileAsString(cdnResource);
+      let cssContent = await downloader.downloadString(cdnResource, { projectRoot });
       console.log(`✅ Downloaded: ${cssContent.length} bytes`);
 
+      // Fonts/images from url(...) are bundled so first paint needs no network
+      const bundled = await bundleReferencedAssets(cssContent, cdnResource, path.join(assetsDir, CDN_ASSETS_DIR), projectRoot);
+      cssContent = bundled.css;
+
+      const optimized = optimizeStylesheet(cssContent, configParser, projectRoot);
+
       // Save CSS to file
-      fs.writeFileSync(cssFilePath, cssContent, 'utf8');
+      fs.writeFileSync(cssFilePath, optimized.critical ? CRITICAL_MARKER + optimized.css : optimized.css, 'utf8');
       console.log(`✅ Saved to: www/assets/cdn-styles.css`);
+      if (optimized.critical) {
+        fs.writeFileSync(criticalFilePath, optimized.critical, 'utf8');
+        console.log(`✅ Saved to: www/assets/${CRITICAL_CSS_FILE}`);
+      } else {
+        removeFile(criticalFilePath);
+      }
       console.log(`\n📱 Native code will inject this CSS at runtime`);
       console.log(`   ✅ Won't be overwritten by OTA updates\n`);
 
@@ -76,6 +117,7 @@ async function downloadCDNResourcesAsync(context) {
       
       // Create empty fallback file
       fs.writeFileSync(cssFilePath, '/* CDN download failed - add fallback CSS here */', 'utf8');
+      removeFile(criticalFilePath);
       console.log(`✅ Created empty fallback file\n`);
     }
 
@@ -86,74 +128,145 @@ async function downloadCDNResourcesAsync(context) {
 }
 
 /**
- * Download file from URL and return as string
+ * Minify the stylesheet (CDN_CSS_MINIFY, default true) and, once it is larger
+ * than CDN_CSS_SPLIT_THRESHOLD_KB (default 100, 0 disables), cut out the rules
+ * the first view needs: html/body/:root, @font-face, and selectors whose
+ * classes/ids/tags appear in www/index.html or CDN_CSS_CRITICAL_SELECTORS.
+ * The critical part is capped at CDN_CSS_CRITICAL_MAX_KB (default 20).
+ * Returns { css, critical } where critical is null when there is no split.
  */
-function downloadFileAsString(urlString) {
-  return new Promise((resolve, reject) => {
-    const protocol = urlString.startsWith('https') ? https : http;
-    const timeoutMs = 30000;
-    let isResolved = false;
-    let data = '';
+function optimizeStylesheet(cssContent, configParser, projectRoot) {
+  const minifyEnabled = configParser.getPreference('CDN_CSS_MINIFY') !== 'false';
+  const thresholdPreference = parseInt(configParser.getPreference('CDN_CSS_SPLIT_THRESHOLD_KB'), 10);
+  const thresholdKB = Number.isNaN(thresholdPreference) ? DEFAULT_SPLIT_THRESHOLD_KB : thresholdPreference;
+
+  const css = minifyEnabled ? cssOptimizer.minify(cssContent) : cssContent;
+  if (minifyEnabled) {
+    console.log(`✅ Minified: ${Buffer.byteLength(cssContent, 'utf8')} -> ${Buffer.byteLength(css, 'utf8')} bytes`);
+  }
+
+  const size = Buffer.byteLength(css, 'utf8');
+  if (thresholdKB <= 0 || size <= thresholdKB * 1024) {
+    return { css, critical: null };
+  }
 
+  const indexPath = path.join(projectRoot, 'www', 'index.html');
+  const html = fs.existsSync(indexPath) ? buildContext.readTextFile(indexPath) : '';
+  const selectors = (configParser.getPreference('CDN_CSS_CRITICAL_SELECTORS') || '')
+    .split(',')
+    .map((selector) => selector.trim())
+    .filter(Boolean);
+  const maxKB = parseInt(configParser.getPreference('CDN_CSS_CRITICAL_MAX_KB'), 10);
+
+  const result = cssOptimizer.extractCritical(css, {
+    html,
+    selectors,
+    maxBytes: maxKB > 0 ? maxKB * 1024 : cssOptimizer.DEFAULT_CRITICAL_MAX_BYTES
+  });
+  if (!result.css) {
+    console.log(`   No critical rules found (${result.totalRules} rules), CSS stays in one part`);
+    return { css, critical: null };
+  }
+
+  console.log(`✅ Critical part: ${result.rules}/${result.totalRules} rules, ` +
+    `${Buffer.byteLength(result.css, 'utf8')} bytes (full stylesheet follows after first paint)`);
+  return { css, critical: result.css };
+}
+
+/**
+ * Find url(...) references in the stylesheet, rewrite relative ones to absolute
+ * CDN URLs (the CSS is served from another origin at runtime) and download them
+ * in parallel into a content-addressed directory with a URL -> file manifest.
+ * Native code serves manifest URLs from assets instead of the network.
+ */
+async function bundleReferencedAssets(cssContent, cssUrl, targetDir, projectRoot) {
+  const urls = new Set();
+  const css = cssContent.replace(/url\(\s*(['"]?)([^'")]+)\1\s*\)/g, (match, quote, ref) => {
+    const trimmed = ref.trim();
+    if (/^(data:|#|about:|blob:)/i.test(trimmed)) {
+      return match;
+    }
+    let absolute;
     try {
-      const request = protocol.get(urlString, { timeout: timeoutMs }, (response) => {
-        // Handle redirects
-        if (response.statusCode >= 300 && response.statusCode < 400 && response.headers.location) {
-          console.log(`   Redirecting to: ${response.headers.location}`);
-          return downloadFileAsString(response.headers.location)
-            .then(resolve)
-            .catch(reject);
-        }
-
-        // Check for errors
-        if (response.statusCode !== 200) {
-          const err = new Error(`HTTP ${response.statusCode} - ${http.STATUS_CODES[response.statusCode] || 'Unknown error'}`);
-          if (!isResolved) {
-            isResolved = true;
-            reject(err);
-          }
-          return;
-        }
-
-        response.on('data', (chunk) => {
-          data += chunk.toString();
-        });
-
-        response.on('error', (err) => {
-          if (!isResolved) {
-            isResolved = true;
-            reject(new Error(`Response error: ${err.message}`));
-          }
-        });
-
-        response.on('end', () => {
-          if (!isResolved) {
-            isResolved = true;
-            resolve(data);
-          }
-        });
-      });
-
-      request.on('error', (err) => {
-        if (!isResolved) {
-          isResolved = true;
-          reject(new Error(`Request error: ${err.message}`));
-        }
-      });
-
-      request.on('timeout', () => {
-        request.destroy();
-        if (!isResolved) {
-          isResolved = true;
-          reject(new Error('Download timeout (30s)'));
-        }
-      });
+      absolute = new url.URL(trimmed, cssUrl).href;
+    } catch (e) {
+      return match;
+    }
+    if (!/^https?:/i.test(absolute)) {
+      return match;
+    }
+    // Requests never carry the fragment (font.svg#icon), so neither do manifest keys
+    const key = new url.URL(absolute);
+    key.hash = '';
+    urls.add(key.href);
+    return `url("${absolute}")`;
+  });
 
-    } catch (error) {
-      if (!isResolved) {
-        isResolved = true;
-        reject(error);
+  if (urls.size === 0) {
+    removeDirectory(targetDir);
+    return { css, manifest: {} };
+  }
+
+  console.log(`   Bundling ${urls.size} referenced asset(s)...`);
+  fs.mkdirSync(targetDir, { recursive: true });
+
+  const manifest = {};
+  let failed = 0;
+  await downloader.mapWithConcurrency(Array.from(urls), downloader.MAX_CONCURRENT_DOWNLOADS, async (assetUrl) => {
+    try {
+      const result = await downloader.download(assetUrl, { projectRoot });
+      const ext = path.extname(new url.URL(assetUrl).pathname).toLowerCase();
+      const hash = await hashFile(result.file);
+      const file = hash + ext;
+      const filePath = path.join(targetDir, file);
+      if (!fs.existsSync(filePath)) {
+        fs.copyFileSync(result.file, filePath);
       }
+      manifest[assetUrl] = {
+        file,
+        type: CONTENT_TYPES[ext] || (result.contentType || 'application/octet-stream').split(';')[0].trim(),
+        bytes: result.size
+      };
+    } catch (error) {
+      failed++;
+      console.log(`   ⚠️  Not bundled (will load from network): ${assetUrl} - ${error.message}`);
     }
   });
+
+  // Drop files from earlier builds that the new manifest no longer references
+  const referenced = new Set(Object.values(manifest).map((entry) => entry.file));
+  fs.readdirSync(targetDir)
+    .filter((file) => file !== CDN_MANIFEST && !referenced.has(file))
+    .forEach((file) => fs.unlinkSync(path.join(targetDir, file)));
+
+  fs.writeFileSync(path.join(targetDir, CDN_MANIFEST), JSON.stringify(manifest, null, 2), 'utf8');
+  console.log(`✅ Bundled ${Object.keys(manifest).length} asset(s) into www/assets/${CDN_ASSETS_DIR}/` +
+    (failed > 0 ? ` (${failed} failed)` : ''));
+
+  return { css, manifest };
+}
+
+/**
+ * Short SHA-256 of a file, streamed so large fonts are never held in memory
+ */
+function hashFile(filePath) {
+  return new Promise((resolve, reject) => {
+    const hash = crypto.createHash('sha256');
+    fs.createReadStream(filePath)
+      .on('data', (chunk) => hash.update(chunk))
+      .on('end', () => resolve(hash.digest('hex').substring(0, 16)))
+      .on('error', reject);
+  });
+}
+
+function removeFile(filePath) {
+  if (fs.existsSync(filePath)) {
+    fs.unlinkSync(filePath);
+  }
+}
+
+function removeDirectory(dir) {
+  if (fs.existsSync(dir)) {
+    fs.rmSync(dir, { recursive: true, force: true });
+  }
 }
@@ -0,0 +1,153 @@
+#!/usr/bin/env node
+
+/**
+ * Asset Fingerprinting Hook
+ *
+ * Adds a content hash to every local JS/CSS/image reference in the prepared
+ * index.html (js/app.js -> js/app.js?v=<hash>) and writes www/asset-manifest.json.
+ * An asset keeps its URL as long as its content does not change, so the
+ * WebView keeps it cached across releases; changed assets get a new URL.
+ *
+ * On Android, CSSInjector serves manifest URLs with a matching hash from the
+ * APK with immutable cache headers. Without native support the query is simply
+ * ignored, so the page loads exactly as before.
+ *
+ * Enabled with: <preference name="ASSET_FINGERPRINTING" value="true" />
+ * Runs at: after_prepare stage (platform www only, project www is untouched).
+ * Registered once at plugin level, not per platform: one run covers every
+ * platform in context.opts.platforms, so a per-platform registration would
+ * fingerprint each platform once per registration.
+ */
+
+const fs = require('fs');
+const path = require('path');
+const crypto = require('crypto');
+const utils = require('./utils');
+
+const ASSET_MANIFEST = 'asset-manifest.json';
+
+const CONTENT_TYPES = {
+  '.js': 'text/javascript',
+  '.mjs': 'text/javascript',
+  '.css': 'text/css',
+  '.png': 'image/png',
+  '.jpg': 'image/jpeg',
+  '.jpeg': 'image/jpeg',
+  '.gif': 'image/gif',
+  '.webp': 'image/webp',
+  '.svg': 'image/svg+xml',
+  '.ico': 'image/x-icon'
+};
+
+// src/href of the tags that load assets; group 3 is the URL
+const REFERENCE_PATTERN = /(<(?:script|link|img|source)\b[^>]*?\s(?:src|href)\s*=\s*)(["'])([^"']+)\2/gi;
+
+function getWwwPath(root, platform) {
+  if (platform === 'android') {
+    return path.join(root, 'platforms/android/app/src/main/assets/www');
+  }
+  if (platform === 'ios') {
+    return path.join(root, 'platforms/ios/www');
+  }
+  return null;
+}
+
+/**
+ * Short SHA-256 of a file, same length as the bundled CDN asset names
+ */
+function hashFile(filePath) {
+  return crypto.createHash('sha256').update(fs.readFileSync(filePath)).digest('hex').substring(0, 16);
+}
+
+/**
+ * www-relative file path of a local reference, or null for remote/data URLs
+ */
+function resolveReference(ref) {
+  if (!ref || /^[a-z][a-z0-9+.-]*:/i.test(ref) || ref.startsWith('//') || ref.startsWith('#')) {
+    return null;
+  }
+  const pathPart = ref.split(/[?#]/)[0];
+  let decoded;
+  try {
+    decoded = decodeURIComponent(pathPart);
+  } catch (e) {
+    return null;
+  }
+  const relative = path.posix.normalize(decoded.replace(/^\/+/, ''));
+  return relative.startsWith('..') || relative === '.' ? null : relative;
+}
+
+/**
+ * ref with its v= query parameter set to hash; other parameters and the fragment are kept
+ */
+function withVersion(ref, hash) {
+  const hashIndex = ref.indexOf('#');
+  const fragment = hashIndex >= 0 ? ref.substring(hashIndex) : '';
+  const withoutFragment = hashIndex >= 0 ? ref.substring(0, hashIndex) : ref;
+  const [pathPart, query] = withoutFragment.split('?');
+  const params = (query || '').split('&').filter((param) => param && !param.startsWith('v='));
+  params.push(`v=${hash}`);
+  return `${pathPart}?${params.join('&')}${fragment}`;
+}
+
+function fingerprintPlatform(root, platform) {
+  const wwwPath = getWwwPath(root, platform);
+  const indexPath = wwwPath && path.join(wwwPath, 'index.html');
+  if (!indexPath || !fs.existsSync(indexPath)) {
+    console.log(`   ⚠️  index.html not found for ${platform}, skipping`);
+    return;
+  }
+
+  const manifest = {};
+  let unchanged = 0;
+  const html = fs.readFileSync(indexPath, 'utf8');
+  const rewritten = html.replace(REFERENCE_PATTERN, (match, prefix, quote, ref) => {
+    const relative = resolveReference(ref);
+    const type = relative && CONTENT_TYPES[path.extname(relative).toLowerCase()];
+    const filePath = type && path.join(wwwPath, relative);
+    if (!filePath || !fs.existsSync(filePath)) {
+      return match;
+    }
+
+    const entry = manifest[relative] || {
+      hash: hashFile(filePath),
+      type,
+      bytes: fs.statSync(filePath).size
+    };
+    manifest[relative] = entry;
+    const versioned = withVersion(ref, entry.hash);
+    if (versioned === ref) {
+      unchanged++;
+    }
+    return `${prefix}${quote}${versioned}${quote}`;
+  });
+
+  if (rewritten !== html) {
+    fs.writeFileSync(indexPath, rewritten, 'utf8');
+  }
+  fs.writeFileSync(path.join(wwwPath, ASSET_MANIFEST), JSON.stringify(manifest, null, 2), 'utf8');
+
+  const count = Object.keys(manifest).length;
+  console.log(`   ✅ ${count} asset(s) fingerprinted in index.html` +
+    (unchanged > 0 ? ` (${unchanged} reference(s) already current)` : ''));
+  Object.keys(manifest).forEach((file) => console.log(`   - ${file}?v=${manifest[file].hash}`));
+}
+
+module.exports = function(context) {
+  const config = utils.getConfigParser(context);
+  if (!config || config.getPreference('ASSET_FINGERPRINTING') !== 'true') {
+    return;
+  }
+
+  console.log('\n🔖 [FINGERPRINT] Adding content hashes to www asset references...');
+  // Each prepared platform once, whatever else the platform list contains
+  const platforms = Array.from(new Set(context.opts.platforms || [])).filter((platform) => getWwwPath('', platform));
+  for (const platform of platforms) {
+    try {
+      fingerprintPlatform(context.opts.projectRoot, platform);
+    } catch (error) {
+      // Never fails the build: unfingerprinted URLs still load normally
+      console.log(`   ⚠️  Fingerprinting skipped for ${platform}: ${error.message}`);
+    }
+  }
+};
@@ -2,41 +2,11 @@
 
 const fs = require('fs');
 const path = require('path');
-const https = require('https');
-const http = require('http');
+const downloader = require('./utils/download-cache');
+const renderer = require('./utils/icon-renderer');
+const buildContext = require('./utils/build-context');
 
-function downloadFile(url) {
-  return new Promise((resolve, reject) => {
-    const protocol = url.startsWith('https') ? https : http;
-    const request = protocol.get(url, (response) => {
-      // Handle redirects
-      if (response.statusCode === 301 || response.statusCode === 302) {
-        return downloadFile(response.headers.location).then(resolve).catch(reject);
-      }
-      
-      if (response.statusCode !== 200) {
-        return reject(new Error(`HTTP ${response.statusCode}: ${response.statusMessage}`));
-      }
-      
-      const chunks = [];
-      response.on('data', chunk => chunks.push(chunk));
-      response.on('end', () => {
-        const buffer = Buffer.concat(chunks);
-        if (buffer.length === 0) {
-          return reject(new Error('Downloaded file is empty'));
-        }
-        resolve(buffer);
-      });
-      response.on('error', reject);
-    });
-    
-    request.on('error', reject);
-    request.setTimeout(30000, () => {
-      request.destroy();
-      reject(new Error('Download timeout after 30s'));
-    });
-  });
-}
+const ICON_MANIFEST = '.app-info-icon-manifest.json';
 
 // Try to load image processing library
 let sharp = null;
@@ -55,32 +25,22 @@ try {
   }
 }
 
-async function resizeImage(srcBuffer, dest, size) {
-  try {
-    if (sharp) {
-      await sharp(srcBuffer)
-        .resize(size, size, {
-          fit: 'contain',
-          background: { r: 255, g: 255, b: 255, alpha: 0 }
-        })
-        .png()
-        .toFile(dest);
-      return true;
-    } else if (Jimp) {
-      const image = await Jimp.read(srcBuffer);
-      await image.resize(size, size).writeAsync(dest);
-      return true;
-    }
-    return false;
-  } catch (error) {
-    console.log(`   ⚠️  Error resizing to ${size}x${size}:`, error.message);
-    return false;
-  }
+/**
+ * Render every size from the decoded source, skipping outputs that are
+ * still current for this exact source (see utils/icon-renderer.js)
+ */
+function renderIcons(root, iconBuffer, jobs) {
+  return renderer.renderIcons(iconBuffer, jobs, {
+    sharp,
+    Jimp,
+    jimpPath: Jimp ? require.resolve('jimp') : null,
+    root,
+    manifestFile: path.join(root, 'platforms', ICON_MANIFEST)
+  });
 }
 
 module.exports = async function(context) {
-  const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
-  const config = new ConfigParser(path.join(context.opts.projectRoot, 'config.xml'));
+  const config = buildContext.getConfigParser(context);
   
   const platforms = context.opts.platforms;
   const root = context.opts.projectRoot;
@@ -117,7 +77,7 @@ module.exports = async function(context) {
   let iconBuffer;
   
   try {
-    iconBuffer = await downloadFile(cdnUrl);
+    iconBuffer = await downloader.downloadBuffer(cdnUrl, { projectRoot: root });
     console.log(`✅ Downloaded ${(iconBuffer.length / 1024).toFixed(2)} KB`);
   } catch (err) {
     console.log('❌ Download failed:', err.message);
@@ -189,43 +149,16 @@ async function generateAndroidIcons(root, iconBuffer) {
   
   console.log(`🎨 Generating ${androidSizes.length} Android icon densities...`);
   
-  // Clean old icons
-  let cleanedCount = 0;
-  for (const [folder] of androidSizes) {
-    const iconPath = path.join(resPath, folder, 'ic_launcher.png');
-    if (fs.existsSync(iconPath)) {
-      try {
-        fs.unlinkSync(iconPath);
-        cleanedCount++;
-      } catch (e) {}
-    }
-  }
-  
-  if (cleanedCount > 0) {
-    console.log(`🧹 Cleaned ${cleanedCount} old icon(s)`);
-  }
+  const jobs = androidSizes.map(([folder, size]) => ({
+    output: path.join(resPath, folder, 'ic_launcher.png'),
+    size
+  }));
+  const result = await renderIcons(root, iconBuffer, jobs);
   
-  let successCount = 0;
-  for (const [folder, size] of androidSizes) {
-    const folderPath = path.join(resPath, folder);
-    if (!fs.existsSync(folderPath)) {
-      fs.mkdirSync(folderPath, { recursive: true });
-    }
-    
-    const output = path.join(folderPath, 'ic_launcher.png');
-    if (await resizeImage(iconBuffer, output, size)) {
-      // Verify file
-      if (fs.existsSync(output)) {
-        const stats = fs.statSync(output);
-        if (stats.size > 0) {
-          console.log(`  ✅ ${folder}/ic_launcher.png (${size}x${size})`);
-          successCount++;
-        }
-      }
-    }
+  if (result.skipped > 0) {
+    console.log(`⏭️  ${result.skipped} icon(s) unchanged, skipped`);
   }
-  
-  console.log(`✅ Generated ${successCount}/${androidSizes.length} Android icons`);
+  console.log(`✅ Generated ${result.generated}/${androidSizes.length - result.skipped} Android icons`);
 }
 
 async function generateIOSIcons(root, iconBuffer) {
@@ -299,8 +232,9 @@ async function generateIOSIcons(root, iconBuffer) {
   
   console.log(`🎨 Generating ${iosSizes.length} iOS icon sizes...`);
   
-  // Clean old icons
-  const oldIcons = fs.readdirSync(appIconPath).filter(f => f.endsWith('.png'));
+  // Clean icons that are not part of the set
+  const iconNames = new Set(iosSizes.map(([filename]) => filename));
+  const oldIcons = fs.readdirSync(appIconPath).filter(f => f.endsWith('.png') && !iconNames.has(f));
   if (oldIcons.length > 0) {
     oldIcons.forEach(icon => {
       try {
@@ -310,21 +244,16 @@ async function generateIOSIcons(root, iconBuffer) {
     console.log(`🧹 Cleaned ${oldIcons.length} old icon(s)`);
   }
   
-  let successCount = 0;
-  for (const [filename, size] of iosSizes) {
-    const output = path.join(appIconPath, filename);
-    if (await resizeImage(iconBuffer, output, size)) {
-      // Verify file
-      if (fs.existsSync(output)) {
-        const stats = fs.statSync(output);
-        if (stats.size > 0) {
-          successCount++;
-        }
-      }
-    }
-  }
+  const jobs = iosSizes.map(([filename, size]) => ({
+    output: path.join(appIconPath, filename),
+    size
+  }));
+  const result = await renderIcons(root, iconBuffer, jobs);
   
-  console.log(`✅ Generated ${successCount}/${iosSizes.length} iOS icons`);
+  if (result.skipped > 0) {
+    console.log(`⏭️  ${result.skipped} icon(s) unchanged, skipped`);
+  }
+  console.log(`✅ Generated ${result.generated}/${iosSizes.length - result.skipped} iOS icons`);
   
   // Create Contents.json
   const contentsJson = {
@@ -8,6 +8,7 @@
 
 const fs = require('fs');
 const path = require('path');
+const buildContext = require('../utils/build-context');
 
 module.exports = async function(context) {
   const platforms = context.opts.platforms;
@@ -78,8 +79,7 @@ async function finalColorOverride(context, iosPath) {
   console.log('🎨 Final color override check');
   
   try {
-    const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
-    const config = new ConfigParser(path.join(context.opts.projectRoot, 'config.xml'));
+    const config = buildContext.getConfigParser(context);
     
     const splashBg = config.getPreference('SplashScreenBackgroundColor');
     
@@ -11,6 +11,7 @@
 
 const fs = require('fs');
 const path = require('path');
+const buildContext = require('../utils/build-context');
 const https = require('https');
 const http = require('http');
 
@@ -80,8 +81,7 @@ async function changeAppInfo(context, iosPath) {
   console.log('📝 Step 2: Change App Info');
   
   try {
-    const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
-    const config = new ConfigParser(path.join(context.opts.projectRoot, 'config.xml'));
+    const config = buildContext.getConfigParser(context);
     
     const appName = config.getPreference('APP_NAME');
     const versionNumber = config.getPreference('VERSION_NUMBER');
@@ -103,7 +103,7 @@ async function changeAppInfo(context, iosPath) {
       return;
     }
     
-    let plistContent = fs.readFileSync(plistPath, 'utf8');
+    let plistContent = buildContext.readTextFile(plistPath);
     let modified = false;
     
     if (appName) {
@@ -149,7 +149,7 @@ async function changeAppInfo(context, iosPath) {
     }
     
     if (modified) {
-      fs.writeFileSync(plistPath, plistContent, 'utf8');
+      buildContext.writeTextFile(plistPath, plistContent);
     }
   } catch (error) {
     console.log('   ⚠️  Failed:', error.message);
@@ -160,8 +160,7 @@ async function generateIcons(context, iosPath) {
   console.log('🎨 Step 3: Generate Icons from CDN');
   
   try {
-    const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
-    const config = new ConfigParser(path.join(context.opts.projectRoot, 'config.xml'));
+    const config = buildContext.getConfigParser(context);
     const cdnIcon = config.getPreference('CDN_ICON');
     
     if (!cdnIcon) {
@@ -354,8 +353,7 @@ async function injectBuildInfo(context, iosPath) {
   console.log('💾 Step 4: Inject Build Info (JSON)');
   
   try {
-    const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
-    const config = new ConfigParser(path.join(context.opts.projectRoot, 'config.xml'));
+    const config = buildContext.getConfigParser(context);
     
     const appName = config.getPreference('APP_NAME') || config.name() || 'Unknown';
     const versionNumber = config.getPreference('VERSION_NUMBER') || config.version() || '0.0.0';
@@ -454,8 +452,7 @@ async function customizeUI(context, iosPath) {
   console.log('🎨 Step 5: Customize UI (Splash & Webview)');
   
   try {
-    const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
-    const config = new ConfigParser(path.join(context.opts.projectRoot, 'config.xml'));
+    const config = buildContext.getConfigParser(context);
     
     const splashBg = config.getPreference('SplashScreenBackgroundColor');
     const webviewBg = config.getPreference('WEBVIEW_BACKGROUND_COLOR');
@@ -484,7 +481,7 @@ async function customizeUI(context, iosPath) {
       // Update CDVLaunchScreen.storyboard (Cordova's existing storyboard)
       const cdvStoryboardPath = path.join(iosPath, projectName, 'CDVLaunchScreen.storyboard');
       if (fs.existsSync(cdvStoryboardPath)) {
-        let cdvStoryboard = fs.readFileSync(cdvStoryboardPath, 'utf8');
+        let cdvStoryboard = buildContext.readTextFile(cdvStoryboardPath);
         
         // AGGRESSIVE REPLACE: Remove ALL color definitions
         cdvStoryboard = cdvStoryboard.replace(
@@ -497,7 +494,7 @@ async function customizeUI(context, iosPath) {
           colorXML
         );
         
-        fs.writeFileSync(cdvStoryboardPath, cdvStoryboard, 'utf8');
+        buildContext.writeTextFile(cdvStoryboardPath, cdvStoryboard);
         console.log('   ✅ Updated CDVLaunchScreen.storyboard with splash color');
       } else {
         console.log('   ⚠️  CDVLaunchScreen.storyboard not found!');
@@ -559,7 +556,7 @@ async function customizeUI(context, iosPath) {
       // Update Info.plist: Point to CDVLaunchScreen + iOS 14+ dictionary
       const plistPath = path.join(iosPath, projectName, `${projectName}-Info.plist`);
       if (fs.existsSync(plistPath)) {
-        let plistContent = fs.readFileSync(plistPath, 'utf8');
+        let plistContent = buildContext.readTextFile(plistPath);
         
         // Remove old UILaunchStoryboardName if exists
         plistContent = plistContent.replace(
@@ -581,7 +578,7 @@ async function customizeUI(context, iosPath) {
           `${launchScreenConfig}\n</dict>\n</plist>`
         );
         
-        fs.writeFileSync(plistPath, plistContent, 'utf8');
+        buildContext.writeTextFile(plistPath, plistContent);
         console.log('   ✅ Set UILaunchStoryboardName = CDVLaunchScreen (iOS 13+)');
         console.log('   ✅ Added UILaunchScreen dictionary (iOS 14+ fallback)');
         console.log('   ✅ Splash screen configured for iOS 13-18+');
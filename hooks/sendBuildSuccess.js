@@ -2,8 +2,12 @@
 
 const fs = require("fs");
 const path = require("path");
-const https = require("https");
 const { getConfigParser } = require("./utils");
+const notificationQueue = require("./utils/notification-queue");
+
+// How long the build waits for this build's notifications before leaving
+// them to the background flush (BUILD_NOTIFICATION_WAIT_MS)
+const DEFAULT_WAIT_MS = 5000;
 
 /**
  * Read backup data
@@ -95,83 +99,10 @@ function getMabsAppName(backup) {
   return "";
 }
 
-/**
- * Send build info to API with Bearer Token
- * Always uses HTTPS for security
- */
-function sendToAPI(apiUrl, bearerToken, buildData) {
-  return new Promise((resolve, reject) => {
-    try {
-      // Force HTTPS - replace http:// with https:// if present
-      let secureUrl = apiUrl;
-      if (secureUrl.startsWith('http://')) {
-        secureUrl = secureUrl.replace('http://', 'https://');
-        console.log("  [SECURITY] Auto-converted HTTP to HTTPS");
-      }
-      
-      // Add https:// if no protocol specified
-      if (!secureUrl.startsWith('https://') && !secureUrl.startsWith('http://')) {
-        secureUrl = 'https://' + secureUrl;
-        console.log("  [SECURITY] Added HTTPS protocol");
-      }
-      
-      const url = new URL(secureUrl);
-      const postData = JSON.stringify(buildData);
-      
-      const headers = {
-        "Content-Type": "application/json",
-        "Content-Length": Buffer.byteLength(postData)
-      };
-      
-      // Add Bearer Token if provided
-      if (bearerToken && bearerToken.trim() !== "") {
-        headers["Authorization"] = `Bearer ${bearerToken.trim()}`;
-      }
-      
-      const options = {
-        hostname: url.hostname,
-        port: url.port || 443, // Always default to 443 for HTTPS
-        path: url.pathname + url.search,
-        method: "POST",
-        headers: headers,
-        timeout: 30000
-      };
-      
-      const req = https.request(options, (res) => {
-        let data = "";
-        res.on("data", (chunk) => { data += chunk; });
-        res.on("end", () => {
-          if (res.statusCode >= 200 && res.statusCode < 300) {
-            resolve({ 
-              success: true, 
-              statusCode: res.statusCode, 
-              data: data 
-            });
-          } else {
-            reject(new Error(`API returned status ${res.statusCode}: ${data}`));
-          }
-        });
-      });
-      
-      req.on("error", (err) => {
-        reject(new Error(`Network error: ${err.message}`));
-      });
-      
-      req.on("timeout", () => {
-        req.destroy();
-        reject(new Error("Request timeout"));
-      });
-      
-      req.write(postData);
-      req.end();
-    } catch (err) {
-      reject(new Error(`Request setup failed: ${err.message}`));
-    }
-  });
-}
-
 /**
  * Main hook - runs AFTER successful build
+ * Notifications are queued on disk and sent by a detached flush; the build
+ * waits at most BUILD_NOTIFICATION_WAIT_MS for them
  */
 module.exports = function(context) {
   const root = context.opts.projectRoot;
@@ -220,13 +151,17 @@ module.exports = function(context) {
     console.log("       API request will be sent WITHOUT authentication");
   }
   
+  const queueDir = notificationQueue.getQueueDir(root);
+  const waitPreference = parseInt(config.getPreference("BUILD_NOTIFICATION_WAIT_MS"), 10);
+  const waitMs = Number.isNaN(waitPreference) ? DEFAULT_WAIT_MS : waitPreference;
+  
   // Read backup to get ORIGINAL version from MABS
   const backup = readBackup(root);
   if (!backup || !backup.platforms) {
     console.log("[ERROR] No backup found or invalid backup data");
     console.log("        Cannot determine original version from MABS");
-    console.log("==================================\n");
-    return;
+    // Notifications left over from earlier builds are still sent
+    return flushQueue(queueDir, bearerToken, [], waitMs);
   }
   
   // Get MABS app name from backup
@@ -249,10 +184,10 @@ module.exports = function(context) {
   
   console.log("\n[PLATFORMS]");
   console.log("  Building: " + platforms.join(", "));
-  console.log("  Security: HTTPS only");
+  console.log("  Security: HTTPS only (plain HTTP to localhost)");
   
-  // Send request for each platform
-  const promises = platforms.map(platform => {
+  // Queue one notification per platform
+  const ids = platforms.map(platform => {
     // Get ORIGINAL version from backup (from MABS)
     const originalVersion = backup.platforms[platform] 
       ? (backup.platforms[platform].versionNumber || "0.0.0")
@@ -278,36 +213,48 @@ module.exports = function(context) {
     console.log("  Config Version: " + newVersionNumber);
     console.log("  Body: " + JSON.stringify(payload));
     
-    return sendToAPI(apiUrl, bearerToken, payload)
-      .then(result => {
-        console.log("  [SUCCESS] Status: " + result.statusCode);
-        if (result.data) {
-          try {
-            const jsonResponse = JSON.parse(result.data);
-            console.log("  Response: " + JSON.stringify(jsonResponse));
-          } catch {
-            console.log("  Response: " + result.data.substring(0, 100));
-          }
-        }
-        return { platform, success: true };
-      })
-      .catch(err => {
-        console.error("  [FAILED] Error: " + err.message);
-        return { platform, success: false, error: err.message };
-      });
+    const id = notificationQueue.enqueue(queueDir, apiUrl, payload);
+    console.log("  [QUEUED] " + id);
+    return id;
   });
   
-  // Wait for all requests to complete
-  Promise.all(promises)
-    .then(results => {
-      console.log("\n==================================");
-      const successCount = results.filter(r => r.success).length;
-      const failCount = results.filter(r => !r.success).length;
-      console.log("Build notifications completed:");
-      console.log("  Success: " + successCount);
-      if (failCount > 0) {
-        console.log("  Failed: " + failCount);
-      }
-      console.log("==================================\n");
-    });
-};
\ No newline at end of file
+  return flushQueue(queueDir, bearerToken, ids, waitMs);
+};
+
+/**
+ * Start the detached flush (it also drains entries left by earlier builds)
+ * and wait at most waitMs for this build's entries
+ */
+function flushQueue(queueDir, bearerToken, ids, waitMs) {
+  const logOffset = notificationQueue.logSize(queueDir);
+  try {
+    notificationQueue.spawnFlush(queueDir, bearerToken);
+  } catch (err) {
+    console.error("[ERROR] Could not start notification flush: " + err.message);
+    console.log("        Queued notifications are sent by the next build");
+    console.log("==================================\n");
+    return Promise.resolve();
+  }
+  
+  if (ids.length === 0 || waitMs <= 0) {
+    console.log("\n[INFO] Notifications are sent in the background");
+    console.log("       Log: " + path.join(queueDir, "flush.log"));
+    console.log("==================================\n");
+    return Promise.resolve();
+  }
+  
+  return notificationQueue.waitForEntries(queueDir, ids, waitMs).then(state => {
+    notificationQueue.readLogSince(queueDir, logOffset).forEach(line => console.log("  " + line));
+    console.log("\n==================================");
+    console.log("Build notifications:");
+    console.log("  Sent: " + state.sent.length);
+    if (state.pending.length > 0) {
+      console.log("  Still sending in background: " + state.pending.length);
+      console.log("  Log: " + path.join(queueDir, "flush.log"));
+    }
+    if (state.failed.length > 0) {
+      console.log("  Failed (kept in " + path.join(queueDir, "failed") + "): " + state.failed.length);
+    }
+    console.log("==================================\n");
+  });
+}
@@ -7,11 +7,11 @@
 
 const fs = require('fs');
 const path = require('path');
+const buildContext = require('./utils/build-context');
 
 module.exports = function(context) {
     console.log('[update-splash-theme-color] Starting...');
     
-    const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
     const configPath = path.join(context.opts.projectRoot, 'config.xml');
     
     if (!fs.existsSync(configPath)) {
@@ -19,7 +19,7 @@ module.exports = function(context) {
         return;
     }
     
-    const config = new ConfigParser(configPath);
+    const config = buildContext.getConfigParser(context, configPath);
     
     // Get background color from preferences (in order of priority)
     let bgColor = config.getPreference('WEBVIEW_BACKGROUND_COLOR', 'android') || 
@@ -2,8 +2,8 @@
 
 const path = require('path');
 const fs = require('fs');
-const https = require('https');
-const http = require('http');
+const downloader = require('./utils/download-cache');
+const buildContext = require('./utils/build-context');
 
 // ============================================================================
 // CONFIG UTILITIES
@@ -34,11 +34,10 @@ function getConfigPath(context, platform) {
 }
 
 /**
- * Get ConfigParser instance
+ * Get ConfigParser instance, shared by all hooks until config.xml changes
  */
 function getConfigParser(context, configPath) {
-  const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
-  return new ConfigParser(configPath || path.join(context.opts.projectRoot, 'config.xml'));
+  return buildContext.getConfigParser(context, configPath);
 }
 
 /**
@@ -215,94 +214,17 @@ function ensureDirectoryExists(dirPath) {
 }
 
 /**
- * Find first file matching patterns in directory tree
+ * Find first file matching patterns in directory tree (shared, memoized index)
  */
 function findFile(baseDir, patterns, maxDepth = 3) {
-  function searchDir(dir, depth = 0) {
-    if (depth > maxDepth) return null;
-    
-    let items;
-    try {
-      items = fs.readdirSync(dir);
-    } catch (error) {
-      return null;
-    }
-    
-    for (const item of items) {
-      const fullPath = path.join(dir, item);
-      let stat;
-      
-      try {
-        stat = fs.statSync(fullPath);
-      } catch (error) {
-        continue;
-      }
-      
-      if (stat.isFile()) {
-        for (const pattern of patterns) {
-          if (item === pattern || item.endsWith(pattern)) {
-            return fullPath;
-          }
-        }
-      } else if (stat.isDirectory()) {
-        if (['node_modules', 'build', 'Pods', '.git', 'DerivedData'].includes(item)) {
-          continue;
-        }
-        const found = searchDir(fullPath, depth + 1);
-        if (found) return found;
-      }
-    }
-    
-    return null;
-  }
-  
-  return searchDir(baseDir);
+  return buildContext.findFile(baseDir, patterns, maxDepth);
 }
 
 /**
- * Find all files matching patterns
+ * Find all files matching patterns (shared, memoized index)
  */
 function findAllFiles(baseDir, patterns, maxDepth = 3) {
-  const results = [];
-  
-  function searchDir(dir, depth = 0) {
-    if (depth > maxDepth) return;
-    
-    let items;
-    try {
-      items = fs.readdirSync(dir);
-    } catch (error) {
-      return;
-    }
-    
-    for (const item of items) {
-      const fullPath = path.join(dir, item);
-      let stat;
-      
-      try {
-        stat = fs.statSync(fullPath);
-      } catch (error) {
-        continue;
-      }
-      
-      if (stat.isFile()) {
-        for (const pattern of patterns) {
-          if (item === pattern || item.endsWith(pattern)) {
-            results.push(fullPath);
-            break;
-          }
-        }
-      } else if (stat.isDirectory()) {
-        if (['node_modules', 'build', 'Pods', '.git', 'DerivedData'].includes(item)) {
-          continue;
-        }
-        searchDir(fullPath, depth + 1);
-      }
-    }
-  }
-  
-  searchDir(baseDir);
-  return results;
+  return buildContext.findAllFiles(baseDir, patterns, maxDepth);
 }
 
 // ============================================================================
@@ -481,27 +403,10 @@ function getInfoPlistPath(iosPath) {
 // ============================================================================
 
 /**
- * Download file from URL
+ * Download file from URL through the shared cached download layer
  */
-function downloadFile(url) {
-  return new Promise((resolve, reject) => {
-    const protocol = url.startsWith('https') ? https : http;
-    protocol.get(url, (response) => {
-      // Handle redirects
-      if (response.statusCode === 301 || response.statusCode === 302) {
-        return downloadFile(response.headers.location).then(resolve).catch(reject);
-      }
-      
-      if (response.statusCode !== 200) {
-        return reject(new Error(`Download failed with status ${response.statusCode}`));
-      }
-      
-      const chunks = [];
-      response.on('data', chunk => chunks.push(chunk));
-      response.on('end', () => resolve(Buffer.concat(chunks)));
-      response.on('error', reject);
-    }).on('error', reject);
-  });
+function downloadFile(url, projectRoot) {
+  return downloader.downloadBuffer(url, { projectRoot });
 }
 
 // ============================================================================
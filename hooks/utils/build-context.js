@@ -0,0 +1,205 @@
+#!/usr/bin/env node
+
+/**
+ * Build Context Utility
+ * Memoized state shared by every hook running in the same Cordova process:
+ * - config.xml is parsed once; the ConfigParser is reused until the file's
+ *   mtime or size changes
+ * - Raw text of config.xml and resource files, same validation; files written
+ *   through writeTextFile stay cached
+ * - One file index per searched tree (e.g. platforms/android), validated per
+ *   directory by mtime so only directories that changed are read again
+ *
+ * hooks/utils.js routes getConfigParser, findFile and findAllFiles through here,
+ * so hooks pick this up without changes.
+ *
+ * Usage:
+ *   const buildContext = require('./utils/build-context');
+ *   const config = buildContext.getConfigParser(context);
+ *   const files = buildContext.findAllFiles(androidPath, ['.xml'], 10);
+ */
+
+const fs = require('fs');
+const path = require('path');
+
+// Directories never searched (same list the hooks always skipped)
+const SKIPPED_DIRS = ['node_modules', 'build', 'Pods', '.git', 'DerivedData'];
+
+const configParsers = new Map();
+const textFiles = new Map();
+const fileIndexes = new Map();
+
+function statOrNull(filePath) {
+  try {
+    return fs.statSync(filePath);
+  } catch (e) {
+    return null;
+  }
+}
+
+function isSameVersion(entry, stat) {
+  return entry && stat && entry.mtimeMs === stat.mtimeMs && entry.size === stat.size;
+}
+
+// ============================================================================
+// CONFIG
+// ============================================================================
+
+/**
+ * ConfigParser for configPath (default: <projectRoot>/config.xml),
+ * parsed once per file version
+ */
+function getConfigParser(context, configPath) {
+  const file = path.resolve(configPath || path.join(context.opts.projectRoot, 'config.xml'));
+  const stat = statOrNull(file);
+  const cached = configParsers.get(file);
+  if (isSameVersion(cached, stat)) {
+    return cached.parser;
+  }
+
+  const ConfigParser = context.requireCordovaModule('cordova-common').ConfigParser;
+  const parser = new ConfigParser(file);
+  if (stat) {
+    configParsers.set(file, { parser, mtimeMs: stat.mtimeMs, size: stat.size });
+  }
+  return parser;
+}
+
+/**
+ * File contents as UTF-8, read once per file version
+ */
+function readTextFile(filePath) {
+  const file = path.resolve(filePath);
+  const stat = statOrNull(file);
+  const cached = textFiles.get(file);
+  if (isSameVersion(cached, stat)) {
+    return cached.content;
+  }
+
+  const content = fs.readFileSync(file, 'utf8');
+  textFiles.set(file, { content, mtimeMs: stat.mtimeMs, size: stat.size });
+  return content;
+}
+
+/**
+ * Write content (through write, default fs.writeFileSync) and remember it,
+ * so the next readTextFile of this version needs no disk read
+ */
+function writeTextFile(filePath, content, write) {
+  const file = path.resolve(filePath);
+  (write || fs.writeFileSync)(file, content, 'utf8');
+  const stat = statOrNull(file);
+  if (stat) {
+    textFiles.set(file, { content, mtimeMs: stat.mtimeMs, size: stat.size });
+  }
+}
+
+// ============================================================================
+// FILE INDEX
+// ============================================================================
+
+/**
+ * Read one directory: files in listing order, subdirectories as child nodes.
+ * Children that did not change are carried over from the previous node.
+ */
+function readDirNode(dir, depth, maxDepth, previous) {
+  const stat = statOrNull(dir);
+  const node = { dir, depth, mtimeMs: stat ? stat.mtimeMs : 0, items: [] };
+  let names;
+  try {
+    names = fs.readdirSync(dir);
+  } catch (e) {
+    return node;
+  }
+
+  const previousChildren = new Map();
+  if (previous) {
+    previous.items.filter((item) => item.dir).forEach((child) => previousChildren.set(child.dir, child));
+  }
+
+  for (const name of names) {
+    const fullPath = path.join(dir, name);
+    const itemStat = statOrNull(fullPath);
+    if (!itemStat) {
+      continue;
+    }
+    if (itemStat.isFile()) {
+      node.items.push({ file: fullPath, name });
+    } else if (itemStat.isDirectory() && !SKIPPED_DIRS.includes(name) && depth < maxDepth) {
+      node.items.push(refreshDirNode(previousChildren.get(fullPath), fullPath, depth + 1, maxDepth));
+    }
+  }
+  return node;
+}
+
+/**
+ * Reuse node if its directory is unchanged, re-reading only what changed below it
+ */
+function refreshDirNode(node, dir, depth, maxDepth) {
+  if (!node || node.maxDepth < maxDepth) {
+    const fresh = readDirNode(dir, depth, maxDepth, node);
+    fresh.maxDepth = maxDepth;
+    return fresh;
+  }
+
+  const stat = statOrNull(dir);
+  if (!stat || stat.mtimeMs !== node.mtimeMs) {
+    const fresh = readDirNode(dir, depth, node.maxDepth, node);
+    fresh.maxDepth = node.maxDepth;
+    return fresh;
+  }
+
+  node.items = node.items.map((item) => (item.dir ? refreshDirNode(item, item.dir, depth + 1, node.maxDepth) : item));
+  return node;
+}
+
+/**
+ * Files under baseDir in depth-first listing order, each with its directory depth
+ */
+function getFileIndex(baseDir, maxDepth) {
+  const root = path.resolve(baseDir);
+  const node = refreshDirNode(fileIndexes.get(root), root, 0, maxDepth);
+  fileIndexes.set(root, node);
+
+  const files = [];
+  (function collect(dirNode) {
+    for (const item of dirNode.items) {
+      if (item.dir) {
+        collect(item);
+      } else {
+        files.push({ file: item.file, name: item.name, depth: dirNode.depth });
+      }
+    }
+  })(node);
+  return files;
+}
+
+function matchesPattern(name, patterns) {
+  return patterns.some((pattern) => name === pattern || name.endsWith(pattern));
+}
+
+/**
+ * First file matching patterns, in the same order a recursive readdir walk finds it
+ */
+function findFile(baseDir, patterns, maxDepth = 3) {
+  const match = getFileIndex(baseDir, maxDepth)
+    .find((entry) => entry.depth <= maxDepth && matchesPattern(entry.name, patterns));
+  return match ? match.file : null;
+}
+
+/**
+ * All files matching patterns
+ */
+function findAllFiles(baseDir, patterns, maxDepth = 3) {
+  return getFileIndex(baseDir, maxDepth)
+    .filter((entry) => entry.depth <= maxDepth && matchesPattern(entry.name, patterns))
+    .map((entry) => entry.file);
+}
+
+module.exports = {
+  getConfigParser,
+  readTextFile,
+  writeTextFile,
+  findFile,
+  findAllFiles
+};
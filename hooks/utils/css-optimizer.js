@@ -0,0 +1,342 @@
+#!/usr/bin/env node
+
+/**
+ * CSS Optimizer Utility
+ * Build-time processing of the CDN stylesheet before it is bundled:
+ * - minify: drops comments (except /*! ... *\/ notices) and whitespace that
+ *   carries no meaning; strings and url(...) are copied untouched
+ * - extractCritical: the rules the first view needs (:root/html/body, @font-face,
+ *   selectors whose classes, ids and tags all appear in www/index.html or in an
+ *   explicit list), in source order and up to a size cap
+ *
+ * The critical part is applied first; the full stylesheet still follows after
+ * first paint, so the cascade ends up exactly as in the original sheet.
+ *
+ * Usage:
+ *   const cssOptimizer = require('./utils/css-optimizer');
+ *   const css = cssOptimizer.minify(rawCss);
+ *   const critical = cssOptimizer.extractCritical(css, { html, selectors: ['.splash'] });
+ *   // { css, rules, totalRules }
+ */
+
+// Whitespace next to these characters never changes the meaning
+const NO_SPACE_BEFORE = '{};,>)';
+const NO_SPACE_AFTER = '{};,>(:';
+
+// Always part of the first view
+const CRITICAL_TAGS = ['html', 'body', 'head'];
+
+// Grouping at-rules whose inner rules are classified one by one
+const GROUPING_AT_RULES = ['@media', '@supports', '@layer', '@container'];
+
+// Default cap for the critical part
+const DEFAULT_CRITICAL_MAX_BYTES = 20 * 1024;
+
+function isWhitespace(c) {
+  return c === ' ' || c === '\n' || c === '\r' || c === '\t' || c === '\f';
+}
+
+/**
+ * End index (exclusive) of the string starting at start (css[start] is the quote)
+ */
+function skipString(css, start) {
+  const quote = css[start];
+  let i = start + 1;
+  while (i < css.length && css[i] !== quote) {
+    if (css[i] === '\\') {
+      i++;
+    }
+    i++;
+  }
+  return Math.min(i + 1, css.length);
+}
+
+/**
+ * End index (exclusive) of the unquoted-safe url(...) starting at start
+ */
+function skipUrl(css, start) {
+  let end = start + 4;
+  while (end < css.length && css[end] !== ')') {
+    end = css[end] === '"' || css[end] === '\'' ? skipString(css, end) : end + 1;
+  }
+  return Math.min(end + 1, css.length);
+}
+
+function isUrlStart(css, i) {
+  return (css[i] === 'u' || css[i] === 'U') && /^url\(/i.test(css.substr(i, 4));
+}
+
+/**
+ * Minified stylesheet
+ */
+function minify(css) {
+  const parts = [];
+  let last = '';
+  let pendingSpace = false;
+  // A ';' is held back until it is known whether '}' follows
+  let pendingSemicolon = false;
+  let i = 0;
+
+  const emit = (text) => {
+    if (pendingSemicolon) {
+      parts.push(';');
+      pendingSemicolon = false;
+    }
+    if (pendingSpace && last && !NO_SPACE_AFTER.includes(last) && !NO_SPACE_BEFORE.includes(text[0])) {
+      parts.push(' ');
+    }
+    pendingSpace = false;
+    parts.push(text);
+    last = text[text.length - 1];
+  };
+
+  // "--empty: ;" keeps its space: older engines reject an empty custom property
+  const closeDeclaration = () => {
+    if (pendingSpace && last === ':') {
+      parts.push(' ');
+    }
+    pendingSpace = false;
+  };
+
+  while (i < css.length) {
+    const c = css[i];
+
+    if (c === '/' && css[i + 1] === '*') {
+      const end = css.indexOf('*/', i + 2);
+      const stop = end === -1 ? css.length : end + 2;
+      if (css[i + 2] === '!') {
+        emit(css.substring(i, stop));
+      } else {
+        // A comment separates tokens like whitespace does
+        pendingSpace = true;
+      }
+      i = stop;
+    } else if (isWhitespace(c)) {
+      pendingSpace = true;
+      i++;
+    } else if (c === '"' || c === '\'') {
+      const end = skipString(css, i);
+      emit(css.substring(i, end));
+      i = end;
+    } else if (isUrlStart(css, i)) {
+      // Unquoted URLs may contain // or /* that are not comments
+      const end = skipUrl(css, i);
+      emit(css.substring(i, end));
+      i = end;
+    } else if (c === ';') {
+      if (pendingSemicolon) {
+        parts.push(';');
+      }
+      closeDeclaration();
+      pendingSemicolon = true;
+      last = ';';
+      i++;
+    } else if (c === '}') {
+      closeDeclaration();
+      pendingSemicolon = false;
+      parts.push('}');
+      last = '}';
+      i++;
+    } else {
+      emit(c);
+      i++;
+    }
+  }
+  if (pendingSemicolon) {
+    parts.push(';');
+  }
+  return parts.join('');
+}
+
+/**
+ * Top-level items of a minified stylesheet (or block body):
+ * { prelude, body } for blocks, { statement } for ;-terminated at-rules
+ */
+function parseItems(css) {
+  const items = [];
+  let start = 0;
+  let depth = 0;
+  let bodyStart = -1;
+  let i = 0;
+
+  while (i < css.length) {
+    const c = css[i];
+    if (c === '"' || c === '\'') {
+      i = skipString(css, i);
+      continue;
+    }
+    if (isUrlStart(css, i)) {
+      i = skipUrl(css, i);
+      continue;
+    }
+    if (c === '/' && css[i + 1] === '*') {
+      const end = css.indexOf('*/', i + 2);
+      i = end === -1 ? css.length : end + 2;
+      continue;
+    }
+    if (c === '{') {
+      if (depth === 0) {
+        bodyStart = i + 1;
+      }
+      depth++;
+    } else if (c === '}') {
+      depth--;
+      if (depth === 0) {
+        items.push({ prelude: css.substring(start, bodyStart - 1).trim(), body: css.substring(bodyStart, i) });
+        start = i + 1;
+      }
+    } else if (c === ';' && depth === 0) {
+      items.push({ statement: css.substring(start, i + 1).trim() });
+      start = i + 1;
+    }
+    i++;
+  }
+  return items;
+}
+
+/**
+ * Class names, ids and tag names used by the static markup
+ */
+function collectMarkupTokens(html) {
+  const tokens = { classes: new Set(), ids: new Set(), tags: new Set(CRITICAL_TAGS) };
+  if (!html) {
+    return tokens;
+  }
+  for (const match of html.matchAll(/<([a-zA-Z][a-zA-Z0-9-]*)/g)) {
+    tokens.tags.add(match[1].toLowerCase());
+  }
+  for (const match of html.matchAll(/\sclass\s*=\s*(["'])([^"']*)\1/gi)) {
+    match[2].split(/\s+/).filter(Boolean).forEach((name) => tokens.classes.add(name));
+  }
+  for (const match of html.matchAll(/\sid\s*=\s*(["'])([^"']*)\1/gi)) {
+    tokens.ids.add(match[2].trim());
+  }
+  return tokens;
+}
+
+/**
+ * Add explicit ".class", "#id" or "tag" entries to tokens
+ */
+function addSelectorTokens(tokens, selectors) {
+  for (const selector of selectors || []) {
+    const name = selector.trim();
+    if (name.startsWith('.')) {
+      tokens.classes.add(name.substring(1));
+    } else if (name.startsWith('#')) {
+      tokens.ids.add(name.substring(1));
+    } else if (name) {
+      tokens.tags.add(name.toLowerCase());
+    }
+  }
+  return tokens;
+}
+
+/**
+ * Split a selector list on top-level commas (not inside :is(), [...] or strings)
+ */
+function splitSelectorList(prelude) {
+  const selectors = [];
+  let depth = 0;
+  let start = 0;
+  for (let i = 0; i < prelude.length; i++) {
+    const c = prelude[i];
+    if (c === '"' || c === '\'') {
+      i = skipString(prelude, i) - 1;
+    } else if (c === '(' || c === '[') {
+      depth++;
+    } else if (c === ')' || c === ']') {
+      depth--;
+    } else if (c === ',' && depth === 0) {
+      selectors.push(prelude.substring(start, i));
+      start = i + 1;
+    }
+  }
+  selectors.push(prelude.substring(start));
+  return selectors;
+}
+
+/**
+ * Whether every class, id and tag the selector names is known to the first view.
+ * Pseudo-classes, pseudo-elements and attribute selectors are ignored.
+ */
+function isCriticalSelector(selector, tokens) {
+  const simplified = selector
+    .replace(/\[[^\]]*\]/g, '')
+    .replace(/::?[a-zA-Z-]+(\([^)]*\))?/g, (pseudo) => (/^:root$/i.test(pseudo) ? ' html ' : ''))
+    .trim();
+  if (!simplified) {
+    return false;
+  }
+
+  const parts = simplified.match(/[.#]?-?[_a-zA-Z\\][\w\\-]*|\*/g) || [];
+  if (parts.length === 0) {
+    return false;
+  }
+  return parts.every((part) => {
+    if (part === '*') return true;
+    if (part[0] === '.') return tokens.classes.has(part.substring(1));
+    if (part[0] === '#') return tokens.ids.has(part.substring(1));
+    return tokens.tags.has(part.toLowerCase());
+  });
+}
+
+/**
+ * Critical text of one item, or '' if nothing in it is critical
+ */
+function criticalItem(item, tokens) {
+  if (item.statement) {
+    // @layer order must match the full sheet; @import would block on the network
+    return /^@layer\b/i.test(item.statement) ? item.statement : '';
+  }
+
+  // Kept /*! notices stay in the full stylesheet only
+  const prelude = item.prelude.replace(/\/\*[\s\S]*?\*\//g, '').trim();
+  if (prelude[0] !== '@') {
+    return splitSelectorList(prelude).some((selector) => isCriticalSelector(selector, tokens))
+      ? `${prelude}{${item.body}}`
+      : '';
+  }
+
+  const atRule = prelude.match(/^@[\w-]+/)[0].toLowerCase();
+  if (atRule === '@font-face') {
+    return `${prelude}{${item.body}}`;
+  }
+  if (GROUPING_AT_RULES.includes(atRule)) {
+    const inner = parseItems(item.body).map((child) => criticalItem(child, tokens)).join('');
+    return inner ? `${prelude}{${inner}}` : '';
+  }
+  // @keyframes, @page, ... wait for the full stylesheet
+  return '';
+}
+
+/**
+ * Critical subset of a minified stylesheet.
+ * options: html (markup of the first view), selectors (extra ".class"/"#id"/"tag"),
+ * maxBytes (rules that would go past it are left to the full stylesheet)
+ * Returns { css, rules, totalRules }
+ */
+function extractCritical(css, options = {}) {
+  const tokens = addSelectorTokens(collectMarkupTokens(options.html), options.selectors);
+  const maxBytes = options.maxBytes || DEFAULT_CRITICAL_MAX_BYTES;
+  const items = parseItems(css);
+
+  let critical = '';
+  let bytes = 0;
+  let rules = 0;
+  for (const item of items) {
+    const text = criticalItem(item, tokens);
+    const size = Buffer.byteLength(text, 'utf8');
+    if (text && bytes + size <= maxBytes) {
+      critical += text;
+      bytes += size;
+      rules++;
+    }
+  }
+  return { css: critical, rules, totalRules: items.length };
+}
+
+module.exports = {
+  minify,
+  extractCritical,
+  DEFAULT_CRITICAL_MAX_BYTES
+};
@@ -0,0 +1,237 @@
+#!/usr/bin/env node
+
+/**
+ * Download Cache Utility
+ * Shared download layer for the build hooks:
+ * - Persistent cache in platforms/.app-info-download-cache, keyed by URL
+ * - Conditional requests (If-None-Match / If-Modified-Since), 304 reuses the cached file
+ * - Responses are streamed to disk, never buffered in memory
+ * - At most MAX_CONCURRENT_DOWNLOADS requests in flight across all hooks
+ * - Falls back to the cached copy when the network fails
+ *
+ * Usage:
+ *   const downloader = require('./utils/download-cache');
+ *   const buffer = await downloader.downloadBuffer(url, { projectRoot });
+ *   const { file, contentType, fromCache } = await downloader.download(url, { projectRoot });
+ */
+
+const fs = require('fs');
+const path = require('path');
+const crypto = require('crypto');
+const https = require('https');
+const http = require('http');
+
+const CACHE_DIR_NAME = '.app-info-download-cache';
+const MAX_CONCURRENT_DOWNLOADS = 6;
+const MAX_REDIRECTS = 5;
+const DEFAULT_TIMEOUT_MS = 30000;
+
+let activeDownloads = 0;
+const waiting = [];
+// Same URL requested twice while in flight shares one request
+const inFlight = new Map();
+
+/**
+ * Run task once a download slot is free
+ */
+function withDownloadSlot(task) {
+  return new Promise((resolve, reject) => {
+    const run = () => {
+      activeDownloads++;
+      Promise.resolve()
+        .then(task)
+        .then(resolve, reject)
+        .finally(() => {
+          activeDownloads--;
+          if (waiting.length > 0) {
+            waiting.shift()();
+          }
+        });
+    };
+    if (activeDownloads < MAX_CONCURRENT_DOWNLOADS) {
+      run();
+    } else {
+      waiting.push(run);
+    }
+  });
+}
+
+/**
+ * Run fn over items with at most `limit` calls in flight
+ */
+async function mapWithConcurrency(items, limit, fn) {
+  let next = 0;
+  const results = new Array(items.length);
+  const workers = Array.from({ length: Math.min(limit, items.length) }, async () => {
+    while (next < items.length) {
+      const index = next++;
+      results[index] = await fn(items[index], index);
+    }
+  });
+  await Promise.all(workers);
+  return results;
+}
+
+function getCacheDir(projectRoot) {
+  return path.join(projectRoot || process.cwd(), 'platforms', CACHE_DIR_NAME);
+}
+
+function getCacheEntry(projectRoot, url) {
+  const key = crypto.createHash('sha256').update(url).digest('hex').substring(0, 32);
+  const dir = getCacheDir(projectRoot);
+  return {
+    url,
+    dir,
+    file: path.join(dir, key + '.body'),
+    metaFile: path.join(dir, key + '.json')
+  };
+}
+
+function readMeta(entry, url) {
+  try {
+    const meta = JSON.parse(fs.readFileSync(entry.metaFile, 'utf8'));
+    if (meta.url === url && fs.existsSync(entry.file)) {
+      return meta;
+    }
+  } catch (e) {
+    // No usable cache entry
+  }
+  return null;
+}
+
+/**
+ * Download url into the cache and resolve with the cached file path.
+ * Result: { file, contentType, size, fromCache }
+ */
+function download(url, options = {}) {
+  const entry = getCacheEntry(options.projectRoot, url);
+  if (inFlight.has(entry.file)) {
+    return inFlight.get(entry.file);
+  }
+  const meta = readMeta(entry, url);
+
+  const pending = withDownloadSlot(() => request(url, entry, meta, options.timeout || DEFAULT_TIMEOUT_MS, 0))
+    .catch((error) => {
+      if (meta) {
+        console.log(`   ⚠️  Download failed (${error.message}), using cached copy of ${url}`);
+        return { file: entry.file, contentType: meta.contentType, size: meta.size, fromCache: true };
+      }
+      throw error;
+    })
+    .finally(() => inFlight.delete(entry.file));
+  inFlight.set(entry.file, pending);
+  return pending;
+}
+
+function request(url, entry, meta, timeout, redirects) {
+  return new Promise((resolve, reject) => {
+    // Set once the body is being written; errors then go through it so the
+    // temp file is gone before the promise settles
+    let out = null;
+    const headers = {};
+    if (meta && meta.etag) {
+      headers['If-None-Match'] = meta.etag;
+    }
+    if (meta && meta.lastModified) {
+      headers['If-Modified-Since'] = meta.lastModified;
+    }
+
+    const protocol = url.startsWith('https') ? https : http;
+    const req = protocol.get(url, { headers, timeout }, (response) => {
+      const status = response.statusCode;
+
+      if (status >= 300 && status < 400 && status !== 304 && response.headers.location) {
+        response.resume();
+        if (redirects >= MAX_REDIRECTS) {
+          reject(new Error('Too many redirects'));
+          return;
+        }
+        const location = new URL(response.headers.location, url).href;
+        // Validators belong to the original URL's cached copy
+        request(location, entry, meta, timeout, redirects + 1).then(resolve, reject);
+        return;
+      }
+
+      if (status === 304 && meta) {
+        response.resume();
+        resolve({ file: entry.file, contentType: meta.contentType, size: meta.size, fromCache: true });
+        return;
+      }
+
+      if (status !== 200) {
+        response.resume();
+        reject(new Error(`HTTP ${status}: ${http.STATUS_CODES[status] || 'Unknown error'}`));
+        return;
+      }
+
+      fs.mkdirSync(entry.dir, { recursive: true });
+      const tmpFile = `${entry.file}.${process.pid}.${crypto.randomBytes(4).toString('hex')}.tmp`;
+      out = fs.createWriteStream(tmpFile);
+      let size = 0;
+      response.on('data', (chunk) => {
+        size += chunk.length;
+      });
+      response.on('error', (error) => out.destroy(error));
+      out.on('error', (error) => {
+        fs.rmSync(tmpFile, { force: true });
+        reject(error);
+      });
+      out.on('finish', () => {
+        const expected = parseInt(response.headers['content-length'], 10);
+        if (!response.complete || (!isNaN(expected) && size !== expected)) {
+          fs.rmSync(tmpFile, { force: true });
+          reject(new Error(`Incomplete download (${size} bytes)`));
+          return;
+        }
+        fs.renameSync(tmpFile, entry.file);
+        const contentType = response.headers['content-type'] || null;
+        fs.writeFileSync(entry.metaFile, JSON.stringify({
+          url: entry.url,
+          etag: response.headers.etag || null,
+          lastModified: response.headers['last-modified'] || null,
+          contentType,
+          size
+        }), 'utf8');
+        resolve({ file: entry.file, contentType, size, fromCache: false });
+      });
+      response.pipe(out);
+    });
+
+    req.on('error', (error) => {
+      if (out) {
+        out.destroy(error);
+      } else {
+        reject(error);
+      }
+    });
+    req.on('timeout', () => {
+      req.destroy(new Error(`Download timeout (${timeout / 1000}s)`));
+    });
+  });
+}
+
+/**
+ * Download and read the cached file into a Buffer
+ */
+async function downloadBuffer(url, options = {}) {
+  const result = await download(url, options);
+  const buffer = fs.readFileSync(result.file);
+  if (buffer.length === 0) {
+    throw new Error('Downloaded file is empty');
+  }
+  return buffer;
+}
+
+async function downloadString(url, options = {}) {
+  const result = await download(url, options);
+  return fs.readFileSync(result.file, 'utf8');
+}
+
+module.exports = {
+  download,
+  downloadBuffer,
+  downloadString,
+  mapWithConcurrency,
+  getCacheDir,
+  MAX_CONCURRENT_DOWNLOADS
+};
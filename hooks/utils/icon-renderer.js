@@ -0,0 +1,230 @@
+#!/usr/bin/env node
+
+/**
+ * Icon Renderer Utility
+ * Renders one source image into many square PNG sizes:
+ * - The source is decoded once; every size resizes the decoded pixels
+ * - Each distinct size is rendered once, duplicates are copied
+ * - sharp renders sizes concurrently (libvips spreads them across cores);
+ *   Jimp renders in a bounded worker_threads pool
+ * - A manifest keyed by output path skips outputs whose source hash and size
+ *   are unchanged and whose file is still the one written last time
+ *
+ * Usage:
+ *   const renderer = require('./utils/icon-renderer');
+ *   await renderer.renderIcons(buffer, [{ output, size }], { sharp, Jimp, jimpPath, manifestFile, root });
+ */
+
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const crypto = require('crypto');
+const { mapWithConcurrency } = require('./download-cache');
+
+const MANIFEST_VERSION = 1;
+
+function getPoolSize(jobCount) {
+  return Math.max(1, Math.min(jobCount, os.cpus().length || 1));
+}
+
+function readManifest(manifestFile) {
+  try {
+    const manifest = JSON.parse(fs.readFileSync(manifestFile, 'utf8'));
+    if (manifest.version === MANIFEST_VERSION && manifest.outputs) {
+      return manifest;
+    }
+  } catch (e) {
+    // Missing or unreadable manifest: render everything
+  }
+  return { version: MANIFEST_VERSION, outputs: {} };
+}
+
+/**
+ * Whether output was written by us for this source and size and not touched since
+ */
+function isUpToDate(entry, output, sourceHash, size) {
+  if (!entry || entry.sourceHash !== sourceHash || entry.size !== size) {
+    return false;
+  }
+  try {
+    const stats = fs.statSync(output);
+    return stats.size === entry.bytes && stats.mtimeMs === entry.mtimeMs;
+  } catch (e) {
+    return false;
+  }
+}
+
+/**
+ * Decoded RGBA pixels of the source, shared by every size
+ */
+async function decodeWithSharp(sharp, srcBuffer) {
+  const { data, info } = await sharp(srcBuffer).ensureAlpha().raw().toBuffer({ resolveWithObject: true });
+  return { data, raw: { width: info.width, height: info.height, channels: info.channels } };
+}
+
+async function renderSizesWithSharp(sharp, srcBuffer, sizes, dir) {
+  const decoded = await decodeWithSharp(sharp, srcBuffer);
+  const rendered = {};
+  await mapWithConcurrency(sizes, getPoolSize(sizes.length), async (size) => {
+    const file = path.join(dir, `${size}.png`);
+    try {
+      await sharp(decoded.data, { raw: decoded.raw })
+        .resize(size, size, {
+          fit: 'contain',
+          background: { r: 255, g: 255, b: 255, alpha: 0 }
+        })
+        .png()
+        .toFile(file);
+      rendered[size] = file;
+    } catch (error) {
+      console.log(`   ⚠️  Error resizing to ${size}x${size}:`, error.message);
+    }
+  });
+  return rendered;
+}
+
+async function renderSizesWithJimp(Jimp, jimpPath, srcBuffer, sizes, dir) {
+  const source = await Jimp.read(srcBuffer);
+  const { width, height } = source.bitmap;
+  // Workers read the decoded pixels from shared memory instead of decoding again
+  const pixels = new SharedArrayBuffer(source.bitmap.data.length);
+  Buffer.from(pixels).set(source.bitmap.data);
+
+  const rendered = {};
+  let Worker = null;
+  try {
+    Worker = require('worker_threads').Worker;
+  } catch (e) {
+    Worker = null;
+  }
+
+  const queue = sizes.slice();
+  const renderInProcess = async (size) => {
+    const file = path.join(dir, `${size}.png`);
+    try {
+      await source.clone().resize(size, size).writeAsync(file);
+      rendered[size] = file;
+    } catch (error) {
+      console.log(`   ⚠️  Error resizing to ${size}x${size}:`, error.message);
+    }
+  };
+
+  if (!Worker || sizes.length < 2) {
+    for (const size of queue) {
+      await renderInProcess(size);
+    }
+    return rendered;
+  }
+
+  const workerFile = path.join(__dirname, 'jimp-resize-worker.js');
+  const workers = [];
+  const runWorker = () => new Promise((resolve, reject) => {
+    const worker = new Worker(workerFile, { workerData: { pixels, width, height, jimpPath } });
+    workers.push(worker);
+    let current = null;
+    // Set once this worker's outcome is decided; its exit is expected from then on
+    let settled = false;
+    const next = () => {
+      current = queue.shift();
+      if (current === undefined) {
+        settled = true;
+        worker.terminate().then(() => resolve());
+        return;
+      }
+      worker.postMessage({ size: current, file: path.join(dir, `${current}.png`) });
+    };
+    worker.on('message', (message) => {
+      if (message.error) {
+        console.log(`   ⚠️  Error resizing to ${message.size}x${message.size}:`, message.error);
+      } else {
+        rendered[message.size] = message.file;
+      }
+      next();
+    });
+    worker.on('error', async (error) => {
+      // Worker unusable (e.g. Jimp not resolvable from the worker): finish in-process
+      settled = true;
+      console.log(`   ⚠️  Jimp worker failed (${error.message}), continuing in-process`);
+      if (current !== undefined && current !== null) {
+        await renderInProcess(current);
+      }
+      while (queue.length > 0) {
+        await renderInProcess(queue.shift());
+      }
+      resolve();
+    });
+    worker.on('exit', (code) => {
+      // Exited on its own (process.exit, out of memory) without an 'error' event
+      if (!settled) {
+        settled = true;
+        reject(new Error(`Jimp worker exited with code ${code} before rendering ${current}x${current}`));
+      }
+    });
+    next();
+  });
+
+  try {
+    await Promise.all(Array.from({ length: getPoolSize(sizes.length) }, runWorker));
+  } catch (error) {
+    await Promise.all(workers.map((worker) => worker.terminate()));
+    throw error;
+  }
+  return rendered;
+}
+
+/**
+ * Render jobs ({ output, size }) from srcBuffer.
+ * Returns { generated, skipped, failed } counts.
+ */
+async function renderIcons(srcBuffer, jobs, options) {
+  const { sharp, Jimp, jimpPath, manifestFile, root } = options;
+  const sourceHash = crypto.createHash('sha256').update(srcBuffer).digest('hex');
+  const manifest = readManifest(manifestFile);
+  const keyOf = (output) => path.relative(root, output);
+
+  const pending = jobs.filter((job) => !isUpToDate(manifest.outputs[keyOf(job.output)], job.output, sourceHash, job.size));
+  const result = { generated: 0, skipped: jobs.length - pending.length, failed: 0 };
+  if (pending.length === 0) {
+    return result;
+  }
+
+  const sizes = Array.from(new Set(pending.map((job) => job.size)));
+  const tmpDir = fs.mkdtempSync(path.join(os.tmpdir(), 'app-info-icons-'));
+  try {
+    const rendered = sharp
+      ? await renderSizesWithSharp(sharp, srcBuffer, sizes, tmpDir)
+      : await renderSizesWithJimp(Jimp, jimpPath, srcBuffer, sizes, tmpDir);
+
+    for (const job of pending) {
+      const file = rendered[job.size];
+      if (!file) {
+        result.failed++;
+        continue;
+      }
+      fs.mkdirSync(path.dirname(job.output), { recursive: true });
+      fs.copyFileSync(file, job.output);
+      const stats = fs.statSync(job.output);
+      if (stats.size === 0) {
+        result.failed++;
+        continue;
+      }
+      manifest.outputs[keyOf(job.output)] = {
+        sourceHash,
+        size: job.size,
+        bytes: stats.size,
+        mtimeMs: stats.mtimeMs
+      };
+      result.generated++;
+    }
+  } finally {
+    fs.rmSync(tmpDir, { recursive: true, force: true });
+  }
+
+  fs.mkdirSync(path.dirname(manifestFile), { recursive: true });
+  fs.writeFileSync(manifestFile, JSON.stringify(manifest, null, 2), 'utf8');
+  return result;
+}
+
+module.exports = {
+  renderIcons
+};
@@ -0,0 +1,33 @@
+#!/usr/bin/env node
+
+/**
+ * Jimp resize worker for icon-renderer.js
+ * Receives the decoded source pixels once (shared memory) and renders
+ * one size per message: { size, file } -> { size, file } or { size, error }
+ */
+
+const { parentPort, workerData } = require('worker_threads');
+
+const { pixels, width, height, jimpPath } = workerData;
+// Same Jimp the hook resolved, wherever it is installed
+const Jimp = require(jimpPath || 'jimp');
+
+function createSource() {
+  return new Promise((resolve, reject) => {
+    // Copy out of shared memory so Jimp owns its buffer
+    const data = Buffer.from(Buffer.from(pixels));
+    new Jimp({ data, width, height }, (error, image) => (error ? reject(error) : resolve(image)));
+  });
+}
+
+const source = createSource();
+
+parentPort.on('message', async ({ size, file }) => {
+  try {
+    const image = (await source).clone();
+    await image.resize(size, size).writeAsync(file);
+    parentPort.postMessage({ size, file });
+  } catch (error) {
+    parentPort.postMessage({ size, error: error.message });
+  }
+});
@@ -0,0 +1,393 @@
+#!/usr/bin/env node
+
+/**
+ * Notification Queue Utility
+ * On-disk queue for build notifications, so a slow or failing endpoint never
+ * holds up the build and no event is lost:
+ * - Each notification is one JSON file in platforms/.app-info-notification-queue
+ * - A detached flush process sends queued entries concurrently, with bounded
+ *   retries and exponential backoff; what is left stays queued for the next build
+ * - Entries are claimed by renaming, so two flushes never send the same entry;
+ *   claims of a flush that died are released again
+ * - Entries that used up all attempts, or that the endpoint rejected with a
+ *   4xx other than 408/429, move to failed/ instead of retrying forever
+ * - The bearer token is passed to the flush in its environment, never written to disk
+ * - Endpoints are always called over HTTPS, except on the loopback interface
+ *
+ * The queue lives in platforms/, so it only carries notifications over to the
+ * next build where platforms/ survives between builds. On ephemeral CI such as
+ * MABS, which starts every build from a fresh platforms/, what a flush did not
+ * send before the build machine went away is lost.
+ *
+ * Usage:
+ *   const queue = require('./utils/notification-queue');
+ *   const dir = queue.getQueueDir(projectRoot);
+ *   const id = queue.enqueue(dir, url, body);
+ *   queue.spawnFlush(dir, token);
+ *   const state = await queue.waitForEntries(dir, [id], 5000); // { sent, failed, pending }
+ *
+ *   node notification-queue.js <queueDir>   (flush; token in BUILD_API_BEARER_TOKEN)
+ */
+
+const fs = require('fs');
+const path = require('path');
+const http = require('http');
+const https = require('https');
+const { spawn } = require('child_process');
+const { mapWithConcurrency } = require('./download-cache');
+
+const QUEUE_DIR_NAME = '.app-info-notification-queue';
+const FAILED_DIR_NAME = 'failed';
+const LOG_FILE_NAME = 'flush.log';
+const ENTRY_SUFFIX = '.json';
+const CLAIM_SUFFIX = '.sending';
+// Plain HTTP never leaves the machine for these, e.g. a local relay or a test server
+const LOOPBACK_HOSTS = ['localhost', '127.0.0.1'];
+
+const DEFAULTS = {
+  concurrency: 4,
+  // Attempts per flush, and in total before an entry moves to failed/
+  attemptsPerFlush: 4,
+  maxAttempts: 8,
+  baseDelayMs: 1000,
+  maxDelayMs: 30000,
+  timeoutMs: 10000,
+  // A flush gives up (leaving entries queued) after this long
+  deadlineMs: 120000
+};
+
+function getQueueDir(projectRoot) {
+  return path.join(projectRoot || process.cwd(), 'platforms', QUEUE_DIR_NAME);
+}
+
+function logLine(message) {
+  return `${new Date().toISOString()} ${message}`;
+}
+
+/**
+ * Write a notification to the queue. Returns its id.
+ */
+function enqueue(queueDir, url, body) {
+  fs.mkdirSync(queueDir, { recursive: true });
+  const id = `${Date.now()}-${process.pid}-${Math.random().toString(36).substring(2, 8)}`;
+  const entry = { id, url, body, createdAt: new Date().toISOString(), attempts: 0, lastError: null };
+  // Written under a temporary name first so a flush never reads half an entry
+  const tmpFile = path.join(queueDir, `${id}.tmp`);
+  fs.writeFileSync(tmpFile, JSON.stringify(entry, null, 2), 'utf8');
+  fs.renameSync(tmpFile, path.join(queueDir, id + ENTRY_SUFFIX));
+  return id;
+}
+
+function listFiles(queueDir) {
+  try {
+    return fs.readdirSync(queueDir);
+  } catch (e) {
+    return [];
+  }
+}
+
+function isProcessAlive(pid) {
+  try {
+    process.kill(pid, 0);
+    return true;
+  } catch (e) {
+    return e.code === 'EPERM';
+  }
+}
+
+/**
+ * Put entries claimed by a flush that no longer runs back into the queue
+ */
+function releaseStaleClaims(queueDir) {
+  for (const file of listFiles(queueDir)) {
+    const match = file.match(/^(.*\.json)\.(\d+)\.sending$/);
+    if (match && !isProcessAlive(Number(match[2]))) {
+      try {
+        fs.renameSync(path.join(queueDir, file), path.join(queueDir, match[1]));
+      } catch (e) {
+        // Released by another flush
+      }
+    }
+  }
+}
+
+/**
+ * Claim one queued file for this process; null if another flush was faster
+ */
+function claim(queueDir, file) {
+  const claimedFile = path.join(queueDir, `${file}.${process.pid}${CLAIM_SUFFIX}`);
+  try {
+    fs.renameSync(path.join(queueDir, file), claimedFile);
+  } catch (e) {
+    return null;
+  }
+  try {
+    return { file: claimedFile, queuedFile: path.join(queueDir, file), entry: JSON.parse(fs.readFileSync(claimedFile, 'utf8')) };
+  } catch (e) {
+    // Unreadable entries can never be sent
+    moveToFailed(queueDir, claimedFile, file);
+    return null;
+  }
+}
+
+function moveToFailed(queueDir, claimedFile, file) {
+  const failedDir = path.join(queueDir, FAILED_DIR_NAME);
+  fs.mkdirSync(failedDir, { recursive: true });
+  fs.renameSync(claimedFile, path.join(failedDir, file));
+}
+
+/**
+ * Delay before the next attempt: doubles per attempt, capped, with jitter
+ */
+function backoffDelay(attempts, options) {
+  const delay = Math.min(options.maxDelayMs, options.baseDelayMs * Math.pow(2, attempts - 1));
+  return Math.round(delay / 2 + Math.random() * delay / 2);
+}
+
+function sleep(ms) {
+  return new Promise((resolve) => setTimeout(resolve, ms));
+}
+
+/**
+ * The URL a notification is sent to: HTTPS, unless the host is a loopback address
+ */
+function toRequestUrl(apiUrl) {
+  if (apiUrl.startsWith('http://')) {
+    const url = new URL(apiUrl);
+    if (LOOPBACK_HOSTS.includes(url.hostname)) {
+      return url;
+    }
+    // Force HTTPS - replace http:// with https://
+    return new URL(apiUrl.replace('http://', 'https://'));
+  }
+  return new URL(apiUrl.startsWith('https://') ? apiUrl : 'https://' + apiUrl);
+}
+
+/**
+ * POST body as JSON with an optional Bearer token. Uses HTTPS except on loopback.
+ */
+function postJSON(apiUrl, bearerToken, body, timeoutMs) {
+  return new Promise((resolve, reject) => {
+    try {
+      const url = toRequestUrl(apiUrl);
+      const secure = url.protocol === 'https:';
+      const postData = JSON.stringify(body);
+      const headers = {
+        'Content-Type': 'application/json',
+        'Content-Length': Buffer.byteLength(postData)
+      };
+      if (bearerToken && bearerToken.trim() !== '') {
+        headers['Authorization'] = `Bearer ${bearerToken.trim()}`;
+      }
+
+      const req = (secure ? https : http).request({
+        hostname: url.hostname,
+        port: url.port || (secure ? 443 : 80),
+        path: url.pathname + url.search,
+        method: 'POST',
+        headers,
+        timeout: timeoutMs
+      }, (res) => {
+        let data = '';
+        res.on('data', (chunk) => { data += chunk; });
+        res.on('end', () => {
+          if (res.statusCode >= 200 && res.statusCode < 300) {
+            resolve({ statusCode: res.statusCode, data });
+          } else {
+            const error = new Error(`API returned status ${res.statusCode}: ${data.substring(0, 200)}`);
+            error.statusCode = res.statusCode;
+            reject(error);
+          }
+        });
+      });
+
+      req.on('error', (err) => reject(new Error(`Network error: ${err.message}`)));
+      req.on('timeout', () => {
+        req.destroy();
+        reject(new Error('Request timeout'));
+      });
+      req.write(postData);
+      req.end();
+    } catch (err) {
+      reject(new Error(`Request setup failed: ${err.message}`));
+    }
+  });
+}
+
+/**
+ * A 4xx answer will not change on retry, except 408 (timeout) and 429 (rate limit)
+ */
+function isPermanentFailure(err) {
+  const status = err.statusCode;
+  return status >= 400 && status < 500 && status !== 408 && status !== 429;
+}
+
+/**
+ * Send one claimed entry, retrying with backoff within this flush.
+ * Returns 'sent', 'failed' (moved to failed/) or 'pending' (back in the queue).
+ */
+async function sendWithRetries(queueDir, claimed, options, deadline, log) {
+  const entry = claimed.entry;
+  const file = path.basename(claimed.queuedFile);
+  const post = options.post || postJSON;
+
+  for (let attempt = 1; attempt <= options.attemptsPerFlush; attempt++) {
+    entry.attempts++;
+    try {
+      const result = await post(entry.url, options.token, entry.body, options.timeoutMs);
+      fs.unlinkSync(claimed.file);
+      log(`[SENT] ${entry.id} status ${result.statusCode} after ${entry.attempts} attempt(s)`);
+      return 'sent';
+    } catch (err) {
+      entry.lastError = err.message;
+      if (isPermanentFailure(err)) {
+        fs.writeFileSync(claimed.file, JSON.stringify(entry, null, 2), 'utf8');
+        moveToFailed(queueDir, claimed.file, file);
+        log(`[FAILED] ${entry.id} rejected with status ${err.statusCode}, kept in ${FAILED_DIR_NAME}/`);
+        return 'failed';
+      }
+      log(`[RETRY] ${entry.id} attempt ${entry.attempts}/${options.maxAttempts} failed: ${err.message}`);
+    }
+
+    if (entry.attempts >= options.maxAttempts) {
+      fs.writeFileSync(claimed.file, JSON.stringify(entry, null, 2), 'utf8');
+      moveToFailed(queueDir, claimed.file, file);
+      log(`[FAILED] ${entry.id} gave up after ${entry.attempts} attempts, kept in ${FAILED_DIR_NAME}/`);
+      return 'failed';
+    }
+
+    const delay = backoffDelay(entry.attempts, options);
+    if (attempt === options.attemptsPerFlush || Date.now() + delay + options.timeoutMs > deadline) {
+      break;
+    }
+    await sleep(delay);
+  }
+
+  fs.writeFileSync(claimed.file, JSON.stringify(entry, null, 2), 'utf8');
+  fs.renameSync(claimed.file, claimed.queuedFile);
+  log(`[PENDING] ${entry.id} stays queued for the next flush`);
+  return 'pending';
+}
+
+/**
+ * Send everything in the queue. options: token plus any of DEFAULTS, log(message)
+ * and post(url, token, body, timeoutMs) in place of postJSON.
+ * Returns { sent, failed, pending }.
+ */
+async function flush(queueDir, options = {}) {
+  const settings = Object.assign({}, DEFAULTS, options);
+  const log = settings.log || ((message) => console.log(logLine(message)));
+  const deadline = Date.now() + settings.deadlineMs;
+
+  releaseStaleClaims(queueDir);
+  const claimedEntries = listFiles(queueDir)
+    .filter((file) => file.endsWith(ENTRY_SUFFIX))
+    .sort()
+    .map((file) => claim(queueDir, file))
+    .filter(Boolean);
+
+  const summary = { sent: 0, failed: 0, pending: 0 };
+  if (claimedEntries.length === 0) {
+    return summary;
+  }
+  log(`[FLUSH] ${claimedEntries.length} queued notification(s)`);
+
+  const results = await mapWithConcurrency(claimedEntries, settings.concurrency,
+    (claimed) => sendWithRetries(queueDir, claimed, settings, deadline, log));
+  results.forEach((result) => summary[result]++);
+  log(`[FLUSH] Done: ${summary.sent} sent, ${summary.pending} pending, ${summary.failed} failed`);
+  return summary;
+}
+
+/**
+ * Start a flush in a detached process that outlives the build.
+ * Output goes to flush.log in the queue directory.
+ * Entries do not store a token: the flush sends every queued entry, including
+ * those left by earlier builds, with the bearerToken of the build that starts it.
+ */
+function spawnFlush(queueDir, bearerToken) {
+  fs.mkdirSync(queueDir, { recursive: true });
+  const logFd = fs.openSync(path.join(queueDir, LOG_FILE_NAME), 'a');
+  const child = spawn(process.execPath, [__filename, queueDir], {
+    detached: true,
+    stdio: ['ignore', logFd, logFd],
+    env: Object.assign({}, process.env, { BUILD_API_BEARER_TOKEN: bearerToken || '' })
+  });
+  child.unref();
+  fs.closeSync(logFd);
+  return child.pid;
+}
+
+function logSize(queueDir) {
+  try {
+    return fs.statSync(path.join(queueDir, LOG_FILE_NAME)).size;
+  } catch (e) {
+    return 0;
+  }
+}
+
+/**
+ * flush.log lines written after offset
+ */
+function readLogSince(queueDir, offset) {
+  try {
+    const content = fs.readFileSync(path.join(queueDir, LOG_FILE_NAME));
+    return content.subarray(offset).toString('utf8').split('\n').filter(Boolean);
+  } catch (e) {
+    return [];
+  }
+}
+
+/**
+ * Where each entry is: sent (gone), failed (in failed/) or pending (queued or being sent)
+ */
+function entryStates(queueDir, ids) {
+  const files = listFiles(queueDir);
+  const failedFiles = new Set(listFiles(path.join(queueDir, FAILED_DIR_NAME)));
+  const state = { sent: [], failed: [], pending: [] };
+  for (const id of ids) {
+    if (failedFiles.has(id + ENTRY_SUFFIX)) {
+      state.failed.push(id);
+    } else if (files.some((file) => file.startsWith(id + ENTRY_SUFFIX))) {
+      state.pending.push(id);
+    } else {
+      state.sent.push(id);
+    }
+  }
+  return state;
+}
+
+/**
+ * Wait at most waitMs for ids to leave the queue. Never waits longer,
+ * whatever the endpoint does.
+ */
+async function waitForEntries(queueDir, ids, waitMs) {
+  const end = Date.now() + Math.max(0, waitMs);
+  let state = entryStates(queueDir, ids);
+  while (state.pending.length > 0 && Date.now() < end) {
+    await sleep(Math.min(100, end - Date.now()));
+    state = entryStates(queueDir, ids);
+  }
+  return state;
+}
+
+module.exports = {
+  getQueueDir,
+  enqueue,
+  flush,
+  spawnFlush,
+  waitForEntries,
+  logSize,
+  readLogSince,
+  postJSON,
+  DEFAULTS
+};
+
+if (require.main === module) {
+  const queueDir = process.argv[2] || getQueueDir(process.cwd());
+  flush(queueDir, { token: process.env.BUILD_API_BEARER_TOKEN })
+    .catch((err) => {
+      console.log(logLine(`[FLUSH] Failed: ${err.message}`));
+      process.exitCode = 1;
+    });
+}
@@ -0,0 +1,120 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * cordova-build-config.json parsed once, with backgroundColor applied.
+ * The snapshot never changes after construction: lookups return new
+ * objects, so callers may modify what they get back.
+ */
+final class BuildConfigSnapshot {
+
+    private static final String TAG = "CSSInjector";
+
+    private final Map<String, Object> values;
+
+    private BuildConfigSnapshot(Map<String, Object> values) {
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Parse UTF-8 JSON; a non-empty backgroundColor overrides the file's.
+     * Returns null if the content is not a JSON object.
+     */
+    static BuildConfigSnapshot parse(byte[] content, String backgroundColor) {
+        JSONObject config;
+        try {
+            config = new JSONObject(new String(content, StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            android.util.Log.e(TAG, "Failed to parse config JSON", e);
+            return null;
+        }
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        Iterator<String> keys = config.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            values.put(key, config.opt(key));
+        }
+        if (backgroundColor != null && !backgroundColor.isEmpty()) {
+            values.put("backgroundColor", backgroundColor);
+        }
+        return new BuildConfigSnapshot(values);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    Set<String> keys() {
+        return values.keySet();
+    }
+
+    /**
+     * Copy of the whole config
+     */
+    JSONObject toJSONObject() {
+        JSONObject out = new JSONObject();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            putCopy(out, entry.getKey(), entry.getValue());
+        }
+        return out;
+    }
+
+    String toJSON() {
+        return toJSONObject().toString();
+    }
+
+    /**
+     * Copy of the requested keys only; unknown keys are left out
+     */
+    JSONObject select(Iterable<String> keys) {
+        JSONObject out = new JSONObject();
+        for (String key : keys) {
+            if (values.containsKey(key)) {
+                putCopy(out, key, values.get(key));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * select() for the JSON array of names passed to getConfig
+     */
+    JSONObject select(JSONArray keys) {
+        JSONObject out = new JSONObject();
+        for (int i = 0; i < keys.length(); i++) {
+            String key = keys.optString(i, null);
+            if (key != null && values.containsKey(key)) {
+                putCopy(out, key, values.get(key));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Strings, numbers and booleans are shared; nested objects and arrays
+     * are copied so the snapshot stays untouched
+     */
+    private static void putCopy(JSONObject out, String key, Object value) {
+        try {
+            if (value instanceof JSONObject) {
+                value = new JSONObject(value.toString());
+            } else if (value instanceof JSONArray) {
+                value = new JSONArray(value.toString());
+            }
+            out.put(key, value);
+        } catch (JSONException e) {
+            android.util.Log.e(TAG, "Failed to copy config value: " + key, e);
+        }
+    }
+}
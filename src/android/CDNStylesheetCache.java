@@ -0,0 +1,220 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+
+/**
+ * Stale-while-revalidate store for the CDN_RESOURCE stylesheet.
+ * The last good copy lives in the app's files dir and is read back in one
+ * NIO read at startup; revalidate() asks the CDN with ETag/If-Modified-Since
+ * and replaces the copy only when a new version passes CDNStylesheetProcessor,
+ * stored with its url()s resolved and its critical part cut out.
+ * All methods do blocking I/O and must run off the UI thread.
+ */
+final class CDNStylesheetCache {
+
+    private static final String TAG = "CSSInjector";
+    private static final String CSS_FILE = "cdn-styles.css";
+    private static final String CRITICAL_FILE = "cdn-styles.critical.css";
+    private static final String META_FILE = "cdn-styles.properties";
+    // Copies stored before url()s were resolved at runtime have no format and are ignored
+    private static final String FORMAT = "2";
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private final File dir;
+    private final String url;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    CDNStylesheetCache(File dir, String url) {
+        this(dir, url, CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS);
+    }
+
+    CDNStylesheetCache(File dir, String url, int connectTimeoutMs, int readTimeoutMs) {
+        this.dir = dir;
+        this.url = url;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * Last good copy for this URL, or null if none is stored
+     */
+    CDNStylesheetProcessor.Result readCached() {
+        Properties meta = readMeta();
+        File css = new File(dir, CSS_FILE);
+        if (!isCurrent(meta) || !css.isFile()) {
+            return null;
+        }
+        try {
+            byte[] critical = "true".equals(meta.getProperty("critical")) ? readFile(new File(dir, CRITICAL_FILE)) : null;
+            return new CDNStylesheetProcessor.Result(readFile(css), critical);
+        } catch (IOException e) {
+            android.util.Log.e(TAG, "[CDN-Cache] Failed to read " + css, e);
+            return null;
+        }
+    }
+
+    /**
+     * Conditional GET against the CDN. Returns the processed stylesheet once it
+     * is stored on disk, or null if unchanged, not a stylesheet or the request failed.
+     */
+    CDNStylesheetProcessor.Result revalidate(CDNStylesheetProcessor processor) {
+        Properties meta = readMeta();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(connectTimeoutMs);
+            connection.setReadTimeout(readTimeoutMs);
+            connection.setUseCaches(false);
+            if (isCurrent(meta) && new File(dir, CSS_FILE).isFile()) {
+                String etag = meta.getProperty("etag");
+                String lastModified = meta.getProperty("lastModified");
+                if (etag != null) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                android.util.Log.d(TAG, "[CDN-Cache] Not modified: " + url);
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                android.util.Log.w(TAG, "[CDN-Cache] HTTP " + status + " for " + url + ", keeping cached copy");
+                return null;
+            }
+
+            byte[] body;
+            InputStream in = connection.getInputStream();
+            try {
+                body = InjectionCore.readFully(in, connection.getContentLength());
+            } finally {
+                in.close();
+            }
+            CDNStylesheetProcessor.Result result = processor.process(body);
+            if (result == null) {
+                android.util.Log.w(TAG, "[CDN-Cache] Response for " + url + " is not a stylesheet, keeping cached copy");
+                return null;
+            }
+
+            store(result, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+            android.util.Log.d(TAG, "[CDN-Cache] Stored " + result.css.length + " bytes from " + url +
+                (result.critical != null ? ", critical part " + result.critical.length + " bytes" : ""));
+            return result;
+        } catch (IOException e) {
+            android.util.Log.w(TAG, "[CDN-Cache] Revalidation failed for " + url + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private boolean isCurrent(Properties meta) {
+        return meta != null && url.equals(meta.getProperty("url")) && FORMAT.equals(meta.getProperty("format"));
+    }
+
+    /**
+     * Write CSS, critical part then metadata, each through a temp file and rename.
+     * The metadata is removed first, so a crash never leaves a half-written copy in use.
+     */
+    private void store(CDNStylesheetProcessor.Result result, String etag, String lastModified) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        new File(dir, META_FILE).delete();
+        writeAtomically(CSS_FILE, result.css);
+        if (result.critical != null) {
+            writeAtomically(CRITICAL_FILE, result.critical);
+        } else {
+            new File(dir, CRITICAL_FILE).delete();
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        meta.setProperty("format", FORMAT);
+        meta.setProperty("critical", String.valueOf(result.critical != null));
+        if (etag != null) {
+            meta.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            meta.setProperty("lastModified", lastModified);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        meta.store(out, null);
+        writeAtomically(META_FILE, out.toByteArray());
+    }
+
+    private void writeAtomically(String name, byte[] content) throws IOException {
+        File tmp = new File(dir, name + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(content);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(new File(dir, name))) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + name);
+        }
+    }
+
+    private Properties readMeta() {
+        File file = new File(dir, META_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                Properties meta = new Properties();
+                meta.load(in);
+                return meta;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whole file in a single channel read into an exactly sized array
+     */
+    private static byte[] readFile(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read() may return early on some file systems
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Truncated read: " + file);
+            }
+            return buffer.array();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runtime counterpart of the download hook for stylesheets refreshed from the CDN:
+ * url(...) references are made absolute against CDN_RESOURCE, exactly as
+ * bundleReferencedAssets() does, so they load from the CDN or from the bundled
+ * copies in the CDN asset manifest; a large sheet gets its critical part cut out
+ * as css-optimizer.js extractCritical() does. Plain Java only.
+ */
+final class CDNStylesheetProcessor {
+
+    /**
+     * Markup of the first view, read only when a sheet is large enough to split
+     */
+    interface Markup {
+        String read();
+    }
+
+    /**
+     * Stylesheet ready to serve and its critical part, null when not split
+     */
+    static final class Result {
+        final byte[] css;
+        final byte[] critical;
+
+        Result(byte[] css, byte[] critical) {
+            this.css = css;
+            this.critical = critical;
+        }
+    }
+
+    // Same pattern as the hook: url(x), url('x') and url("x")
+    private static final Pattern URL_REFERENCE = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+    private static final Pattern SKIPPED_REFERENCE = Pattern.compile("^(data:|#|about:|blob:)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TAG = Pattern.compile("<([a-zA-Z][a-zA-Z0-9-]*)");
+    private static final Pattern CLASS_ATTRIBUTE = Pattern.compile("\\sclass\\s*=\\s*([\"'])([^\"']*)\\1", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ID_ATTRIBUTE = Pattern.compile("\\sid\\s*=\\s*([\"'])([^\"']*)\\1", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ATTRIBUTE_SELECTOR = Pattern.compile("\\[[^\\]]*\\]");
+    private static final Pattern PSEUDO_SELECTOR = Pattern.compile("::?[a-zA-Z-]+(\\([^)]*\\))?");
+    private static final Pattern SELECTOR_PART = Pattern.compile("[.#]?-?[_a-zA-Z\\\\][\\w\\\\-]*|\\*");
+    private static final Pattern COMMENT = Pattern.compile("/\\*[\\s\\S]*?\\*/");
+    private static final Pattern AT_RULE = Pattern.compile("^@[\\w-]+");
+
+    private static final List<String> CRITICAL_TAGS = Arrays.asList("html", "body", "head");
+    private static final List<String> GROUPING_AT_RULES = Arrays.asList("@media", "@supports", "@layer", "@container");
+
+    private final String baseUrl;
+    private final Markup markup;
+    private final List<String> selectors;
+    private final int splitThresholdBytes;
+    private final int criticalMaxBytes;
+
+    /**
+     * splitThresholdBytes <= 0 never splits; selectors are extra ".class", "#id" or "tag" entries
+     */
+    CDNStylesheetProcessor(String baseUrl, Markup markup, List<String> selectors,
+                           int splitThresholdBytes, int criticalMaxBytes) {
+        this.baseUrl = baseUrl;
+        this.markup = markup;
+        this.selectors = selectors;
+        this.splitThresholdBytes = splitThresholdBytes;
+        this.criticalMaxBytes = criticalMaxBytes;
+    }
+
+    /**
+     * The downloaded body as it should be served, or null if it is not a
+     * stylesheet (not UTF-8, markup such as an error page, unbalanced braces)
+     */
+    Result process(byte[] body) {
+        String css = decode(body);
+        if (css == null || !isStylesheet(css)) {
+            return null;
+        }
+        byte[] resolved = resolveUrls(css, baseUrl).getBytes(StandardCharsets.UTF_8);
+        if (splitThresholdBytes <= 0 || resolved.length <= splitThresholdBytes) {
+            return new Result(resolved, null);
+        }
+        String critical = extractCritical(new String(resolved, StandardCharsets.UTF_8), markup.read(), selectors,
+            criticalMaxBytes);
+        return new Result(resolved, critical.isEmpty() ? null : critical.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Strict UTF-8 decoding, null on malformed input
+     */
+    private static String decode(byte[] body) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(body))
+                .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    static boolean isStylesheet(String css) {
+        String trimmed = css.trim();
+        if (trimmed.isEmpty() || trimmed.charAt(0) == '<') {
+            return false;
+        }
+        return parseItems(css) != null;
+    }
+
+    /**
+     * Relative url(...) references made absolute against baseUrl;
+     * data:, fragment, about: and blob: references are kept as they are
+     */
+    static String resolveUrls(String css, String baseUrl) {
+        URL base;
+        try {
+            base = new URL(baseUrl);
+        } catch (MalformedURLException e) {
+            return css;
+        }
+        Matcher matcher = URL_REFERENCE.matcher(css);
+        StringBuffer out = new StringBuffer(css.length() + 256);
+        while (matcher.find()) {
+            String reference = matcher.group(2).trim();
+            String replacement = matcher.group();
+            if (!SKIPPED_REFERENCE.matcher(reference).find()) {
+                try {
+                    String absolute = new URL(base, reference).toString();
+                    if (absolute.startsWith("http://") || absolute.startsWith("https://")) {
+                        replacement = "url(\"" + absolute + "\")";
+                    }
+                } catch (MalformedURLException e) {
+                    // Left as it is, like the hook does
+                }
+            }
+            matcher.appendReplacement(out, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(out);
+        return out.toString();
+    }
+
+    /**
+     * Critical subset of the stylesheet: :root/html/body, @font-face and rules whose
+     * classes, ids and tags all appear in the markup or selectors, in source order
+     * and up to maxBytes. Empty if nothing is critical.
+     */
+    static String extractCritical(String css, String html, List<String> selectors, int maxBytes) {
+        Tokens tokens = new Tokens(html, selectors);
+        List<Item> items = parseItems(css);
+        if (items == null) {
+            return "";
+        }
+        StringBuilder critical = new StringBuilder();
+        int bytes = 0;
+        for (Item item : items) {
+            String text = criticalItem(item, tokens);
+            int size = text.getBytes(StandardCharsets.UTF_8).length;
+            if (!text.isEmpty() && bytes + size <= maxBytes) {
+                critical.append(text);
+                bytes += size;
+            }
+        }
+        return critical.toString();
+    }
+
+    private static final class Item {
+        final String prelude;
+        final String body;
+        final String statement;
+
+        Item(String prelude, String body, String statement) {
+            this.prelude = prelude;
+            this.body = body;
+            this.statement = statement;
+        }
+    }
+
+    private static final class Tokens {
+        final Set<String> classes = new HashSet<>();
+        final Set<String> ids = new HashSet<>();
+        final Set<String> tags = new HashSet<>(CRITICAL_TAGS);
+
+        Tokens(String html, List<String> selectors) {
+            if (html != null) {
+                Matcher tag = TAG.matcher(html);
+                while (tag.find()) {
+                    tags.add(tag.group(1).toLowerCase(Locale.ROOT));
+                }
+                Matcher classAttribute = CLASS_ATTRIBUTE.matcher(html);
+                while (classAttribute.find()) {
+                    for (String name : classAttribute.group(2).trim().split("\\s+")) {
+                        if (!name.isEmpty()) {
+                            classes.add(name);
+                        }
+                    }
+                }
+                Matcher idAttribute = ID_ATTRIBUTE.matcher(html);
+                while (idAttribute.find()) {
+                    ids.add(idAttribute.group(2).trim());
+                }
+            }
+            for (String selector : selectors) {
+                String name = selector.trim();
+                if (name.startsWith(".")) {
+                    classes.add(name.substring(1));
+                } else if (name.startsWith("#")) {
+                    ids.add(name.substring(1));
+                } else if (!name.isEmpty()) {
+                    tags.add(name.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+    }
+
+    /**
+     * Top-level blocks and ;-terminated statements, or null if braces do not balance
+     */
+    private static List<Item> parseItems(String css) {
+        List<Item> items = new ArrayList<>();
+        int start = 0;
+        int depth = 0;
+        int bodyStart = -1;
+        int i = 0;
+        while (i < css.length()) {
+            char c = css.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = skipString(css, i);
+                continue;
+            }
+            if (isUrlStart(css, i)) {
+                i = skipUrl(css, i);
+                continue;
+            }
+            if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                i = end == -1 ? css.length() : end + 2;
+                continue;
+            }
+            if (c == '{') {
+                if (depth == 0) {
+                    bodyStart = i + 1;
+                }
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth < 0) {
+                    return null;
+                }
+                if (depth == 0) {
+                    items.add(new Item(css.substring(start, bodyStart - 1).trim(), css.substring(bodyStart, i), null));
+                    start = i + 1;
+                }
+            } else if (c == ';' && depth == 0) {
+                items.add(new Item(null, null, css.substring(start, i + 1).trim()));
+                start = i + 1;
+            }
+            i++;
+        }
+        return depth == 0 ? items : null;
+    }
+
+    private static int skipString(String css, int start) {
+        char quote = css.charAt(start);
+        int i = start + 1;
+        while (i < css.length() && css.charAt(i) != quote) {
+            if (css.charAt(i) == '\\') {
+                i++;
+            }
+            i++;
+        }
+        return Math.min(i + 1, css.length());
+    }
+
+    private static int skipUrl(String css, int start) {
+        int end = start + 4;
+        while (end < css.length() && css.charAt(end) != ')') {
+            char c = css.charAt(end);
+            end = c == '"' || c == '\'' ? skipString(css, end) : end + 1;
+        }
+        return Math.min(end + 1, css.length());
+    }
+
+    private static boolean isUrlStart(String css, int i) {
+        return css.regionMatches(true, i, "url(", 0, 4);
+    }
+
+    private static String criticalItem(Item item, Tokens tokens) {
+        if (item.statement != null) {
+            // @layer order must match the full sheet; @import would block on the network
+            String statement = COMMENT.matcher(item.statement).replaceAll("").trim();
+            return statement.regionMatches(true, 0, "@layer", 0, 6) ? statement : "";
+        }
+
+        String prelude = COMMENT.matcher(item.prelude).replaceAll("").trim();
+        if (!prelude.startsWith("@")) {
+            for (String selector : splitSelectorList(prelude)) {
+                if (isCriticalSelector(selector, tokens)) {
+                    return prelude + "{" + item.body + "}";
+                }
+            }
+            return "";
+        }
+
+        Matcher atRuleMatcher = AT_RULE.matcher(prelude);
+        String atRule = atRuleMatcher.find() ? atRuleMatcher.group().toLowerCase(Locale.ROOT) : "";
+        if ("@font-face".equals(atRule)) {
+            return prelude + "{" + item.body + "}";
+        }
+        if (GROUPING_AT_RULES.contains(atRule)) {
+            List<Item> children = parseItems(item.body);
+            StringBuilder inner = new StringBuilder();
+            if (children != null) {
+                for (Item child : children) {
+                    inner.append(criticalItem(child, tokens));
+                }
+            }
+            return inner.length() > 0 ? prelude + "{" + inner + "}" : "";
+        }
+        // @keyframes, @page, ... wait for the full stylesheet
+        return "";
+    }
+
+    /**
+     * Selector list split on top-level commas (not inside :is(), [...] or strings)
+     */
+    private static List<String> splitSelectorList(String prelude) {
+        List<String> selectors = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < prelude.length(); i++) {
+            char c = prelude.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = skipString(prelude, i) - 1;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                selectors.add(prelude.substring(start, i));
+                start = i + 1;
+            }
+        }
+        selectors.add(prelude.substring(start));
+        return selectors;
+    }
+
+    private static boolean isCriticalSelector(String selector, Tokens tokens) {
+        String withoutAttributes = ATTRIBUTE_SELECTOR.matcher(selector).replaceAll("");
+        Matcher pseudo = PSEUDO_SELECTOR.matcher(withoutAttributes);
+        StringBuffer simplified = new StringBuffer();
+        while (pseudo.find()) {
+            pseudo.appendReplacement(simplified, ":root".equalsIgnoreCase(pseudo.group()) ? " html " : "");
+        }
+        pseudo.appendTail(simplified);
+        String remaining = simplified.toString().trim();
+        if (remaining.isEmpty()) {
+            return false;
+        }
+
+        Matcher part = SELECTOR_PART.matcher(remaining);
+        boolean found = false;
+        while (part.find()) {
+            found = true;
+            String name = part.group();
+            boolean known;
+            if ("*".equals(name)) {
+                known = true;
+            } else if (name.charAt(0) == '.') {
+                known = tokens.classes.contains(name.substring(1));
+            } else if (name.charAt(0) == '#') {
+                known = tokens.ids.contains(name.substring(1));
+            } else {
+                known = tokens.tags.contains(name.toLowerCase(Locale.ROOT));
+            }
+            if (!known) {
+                return false;
+            }
+        }
+        return found;
+    }
+}
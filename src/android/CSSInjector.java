@@ -1,14 +1,19 @@
 package com.vnkhoado.cordova.changeappinfo;
 
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Base64;
 import android.webkit.WebResourceRequest;
 import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 
+import androidx.webkit.ScriptHandler;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
 import org.apache.cordova.CallbackContext;
+import org.apache.cordova.ConfigXmlParser;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CordovaWebView;
 import org.apache.cordova.engine.SystemWebView;
@@ -18,30 +23,95 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class CSSInjector extends CordovaPlugin {
 
     private static final String TAG = "CSSInjector";
     private static final String CSS_FILE_PATH = "www/assets/cdn-styles.css";
+    private static final String CRITICAL_CSS_FILE_PATH = "www/assets/cdn-styles.critical.css";
+    // Written by the download hook at the start of a stylesheet that was split
+    private static final byte[] CRITICAL_MARKER = "/*cssinjector:critical*/".getBytes(StandardCharsets.UTF_8);
     private static final String CONFIG_FILE_PATH = "www/cordova-build-config.json";
     private static final String INDEX_HTML_PATH = "www/index.html";
+    // Defaults of the CDN_CSS_* preferences, as in downloadCDNResources.js
+    private static final int DEFAULT_SPLIT_THRESHOLD_KB = 100;
+    private static final int DEFAULT_CRITICAL_MAX_KB = 20;
+    private static final String VIRTUAL_CSS_PATH = "/__cssinjector__/cdn-styles.css";
+    private static final String CDN_ASSETS_DIR = "www/assets/cdn/";
+    private static final String CDN_MANIFEST_PATH = CDN_ASSETS_DIR + "manifest.json";
+    private static final String WWW_DIR = "www/";
+    private static final String ASSET_MANIFEST_PATH = WWW_DIR + "asset-manifest.json";
+    private static final String MODE_POLLING = "polling";
+    private static final String MODE_LIFECYCLE = "lifecycle";
+    private static final String MODE_INTERCEPT = "intercept";
+    private static final String MODE_DOCUMENT_START = "documentstart";
+    private static final String CONFIG_LAZY = "lazy";
     
-    private String cachedCSS = null;
-    private JSONObject cachedConfig = null;
+    // CSS is kept once as the UTF-8 bytes read from assets, config as one
+    // immutable parsed snapshot; scripts derived from them live in payloadCache
+    // until injection settles
+    private volatile byte[] cssBytes = null;
+    // Rules for the first view, applied before cssBytes; null unless cssBytes
+    // is the bundled stylesheet the hook split
+    private volatile byte[] criticalBytes = null;
+    private volatile BuildConfigSnapshot configSnapshot = null;
+    private volatile String cssHash = null;
+    private volatile String configHash = null;
+    // First URL Cordova loads, read by the preload; null until then
+    private volatile String launchUrl = null;
+    private Future<?> assetPreload;
+    private final InjectionPayloadCache payloadCache = new InjectionPayloadCache();
+    private final InjectionMetrics metrics = new InjectionMetrics();
+    // FRAME_METRICS=true: frames rendered until the styles are confirmed
+    private FirstFrameMonitor frameMonitor = null;
     private Handler handler;
     private String backgroundColor = null;
     private boolean initialInjectionDone = false;
     private boolean isFirstPageLoad = true;
-    private String configScript = null;
-    private String cssInlineScript = null;
     private int injectionAttempts = 0;
     private static final int MAX_INJECTION_ATTEMPTS = 10;
+    private String injectionMode = MODE_POLLING;
+    private int pageLoadCount = 0;
+    private int pageInjectionCount = 0;
+    private boolean pageConfirmed = false;
+    // An injection for the current page has not been acknowledged yet
+    private boolean pageAckPending = false;
+    private boolean pageFinished = false;
+    private boolean injectionConfirmed = false;
+    private static final int MAX_PAGE_INJECTIONS = 2;
+    // How long a page injection waits for its acknowledgement before it may be retried
+    private static final long ACK_TIMEOUT_MS = 500;
+    private volatile String lastInterceptedUrl = null;
+    private boolean virtualCSSEnabled = false;
+    private ScriptHandler documentStartScript = null;
+    private CDNStylesheetCache cdnCache = null;
+    private CDNStylesheetProcessor cdnProcessor = null;
+    // CDN URL -> {file, type} for fonts/images bundled by downloadCDNResources.js
+    private volatile JSONObject cdnAssetManifest = null;
+    // CDN_RESOURCE is set, so downloadCDNResources.js may have bundled a manifest
+    private boolean cdnManifestPresent = false;
+    // ASSET_FINGERPRINTING=true: www path -> {hash, type} written by fingerprintAssets.js
+    private boolean assetFingerprinting = false;
+    private volatile JSONObject assetManifest = null;
+    private boolean assetManifestRead = false;
+    private boolean lifecycleInjection = false;
+    // CONFIG_INJECTION=lazy: pages get only these keys inline, the rest through config.get()
+    private boolean lazyConfig = false;
+    private final List<String> inlineConfigKeys = new ArrayList<>();
 
     @Override
     public void pluginInitialize() {
@@ -49,6 +119,8 @@ public class CSSInjector extends CordovaPlugin {
         
         android.util.Log.d(TAG, "=== CSSInjector pluginInitialize START ===");
         
+        assetFingerprinting = preferences.getBoolean("ASSET_FINGERPRINTING", false);
+        
         // Read WEBVIEW_BACKGROUND_COLOR from preferences
         String bgColor = preferences.getString("WEBVIEW_BACKGROUND_COLOR", null);
         if (bgColor == null || bgColor.isEmpty()) {
@@ -66,6 +138,12 @@ public class CSSInjector extends CordovaPlugin {
         backgroundColor = bgColor;
         android.util.Log.d(TAG, "Background color: " + backgroundColor);
         
+        // FRAME_METRICS: measure time-to-styled-first-frame and frames drawn before it
+        if (preferences.getBoolean("FRAME_METRICS", false)) {
+            frameMonitor = new FirstFrameMonitor(metrics);
+            cordova.getActivity().runOnUiThread(() -> frameMonitor.start(cordova.getActivity().getWindow()));
+        }
+        
         // Set WebView and Activity background
         final String finalBgColor = bgColor;
         cordova.getActivity().runOnUiThread(() -> {
@@ -84,35 +162,192 @@ public class CSSInjector extends CordovaPlugin {
             }
         });
         
-        // Pre-load CSS and config
-        android.util.Log.d(TAG, "Reading CSS and config from assets...");
-        cachedCSS = readCSSFromAssets();
-        cachedConfig = readConfigFromAssets();
-        
-        if (cachedCSS != null) {
-            android.util.Log.d(TAG, "CSS loaded: " + cachedCSS.length() + " bytes");
-        } else {
-            android.util.Log.e(TAG, "CSS NOT loaded - file missing or error");
+        // CDN_RUNTIME_REFRESH: serve the last downloaded CDN_RESOURCE and refresh it in the background
+        String cdnResource = preferences.getString("CDN_RESOURCE", null);
+        if (preferences.getBoolean("CDN_RUNTIME_REFRESH", false) && cdnResource != null && !cdnResource.isEmpty()) {
+            cdnCache = new CDNStylesheetCache(new File(cordova.getActivity().getFilesDir(), "cssinjector"), cdnResource);
+            cdnProcessor = createCDNStylesheetProcessor(cdnResource);
         }
         
-        if (cachedConfig != null) {
-            android.util.Log.d(TAG, "Config loaded: " + cachedConfig.toString());
-        } else {
-            android.util.Log.e(TAG, "Config NOT loaded - file missing or error");
+        // CONFIG_INJECTION=lazy: inline only CONFIG_INLINE_KEYS instead of the whole config
+        lazyConfig = CONFIG_LAZY.equalsIgnoreCase(preferences.getString("CONFIG_INJECTION", "full").trim());
+        if (lazyConfig) {
+            for (String key : preferences.getString("CONFIG_INLINE_KEYS", "").split(",")) {
+                if (!key.trim().isEmpty()) {
+                    inlineConfigKeys.add(key.trim());
+                }
+            }
+            inlineConfigKeys.add("backgroundColor");
+            android.util.Log.d(TAG, "[Config] Lazy injection, inline keys: " + inlineConfigKeys);
         }
         
-        // Pre-build inline scripts for HTML injection
-        buildConfigScript();
-        buildCSSInlineScript();
+        // downloadCDNResources.js only bundles a manifest for CDN_RESOURCE; no asset probe needed
+        cdnManifestPresent = cdnResource != null && !cdnResource.isEmpty();
+        
+        // Pre-load CSS and config off the main thread
+        assetPreload = startAssetPreload();
         
         handler = new Handler(Looper.getMainLooper());
         
-        // Start aggressive polling injection
-        startPollingInjection();
+        // CSS_INJECTION_MODE: "polling" (default), "lifecycle", "intercept" or "documentStart"
+        injectionMode = preferences.getString("CSS_INJECTION_MODE", MODE_POLLING).trim().toLowerCase(Locale.ROOT);
+        android.util.Log.d(TAG, "Injection mode: " + injectionMode);
+        
+        boolean clientMode = MODE_LIFECYCLE.equals(injectionMode) || MODE_INTERCEPT.equals(injectionMode);
+        if (MODE_DOCUMENT_START.equals(injectionMode) && isDocumentStartSupported()) {
+            // Every navigation runs the registered script before page JS, no bridge calls
+            initialInjectionDone = true;
+            registerDocumentStartScript();
+        } else if (clientMode && installInjectorWebViewClient()) {
+            // Injection is driven by page lifecycle callbacks / index.html interception
+            lifecycleInjection = true;
+            initialInjectionDone = true;
+            // CSS is served by the WebViewClient at VIRTUAL_CSS_PATH
+            virtualCSSEnabled = true;
+        } else {
+            // Start aggressive polling injection
+            injectionMode = MODE_POLLING;
+            startPollingInjection();
+        }
+        
+        if (!lifecycleInjection && (cdnManifestPresent || assetFingerprinting)) {
+            // Only serves bundled CDN and fingerprinted assets, injection stays with the selected mode
+            installInjectorWebViewClient();
+        }
         
         android.util.Log.d(TAG, "=== CSSInjector pluginInitialize END ===");
     }
 
+    /**
+     * Read CSS and config as UTF-8 bytes on the thread pool.
+     * Injection paths wait on the returned handle instead of reading assets themselves.
+     */
+    private Future<?> startAssetPreload() {
+        return cordova.getThreadPool().submit(() -> {
+            launchUrl = readLaunchUrl();
+            android.util.Log.d(TAG, "Reading CSS and config from assets...");
+            long readStart = System.nanoTime();
+            CDNStylesheetProcessor.Result cached = cdnCache != null ? cdnCache.readCached() : null;
+            byte[] css;
+            byte[] critical;
+            if (cached != null) {
+                android.util.Log.d(TAG, "[CDN-Cache] Using stored copy instead of bundled CSS");
+                css = cached.css;
+                critical = cached.critical;
+            } else {
+                css = readAssetOrNull(CSS_FILE_PATH);
+                critical = css != null && hasCriticalMarker(css) ? readAssetOrNull(CRITICAL_CSS_FILE_PATH) : null;
+            }
+            if (css != null) {
+                cssHash = InjectionPayloadCache.contentHash(css);
+                cssBytes = css;
+            }
+            criticalBytes = critical;
+            
+            byte[] config = readAssetOrNull(CONFIG_FILE_PATH);
+            BuildConfigSnapshot snapshot = config != null ? BuildConfigSnapshot.parse(config, backgroundColor) : null;
+            if (snapshot != null) {
+                configHash = InjectionPayloadCache.contentHash(config);
+                configSnapshot = snapshot;
+            }
+            metrics.recordAssetRead(System.nanoTime() - readStart,
+                css != null ? css.length : 0,
+                config != null ? config.length : 0);
+            
+            if (css != null) {
+                android.util.Log.d(TAG, "CSS loaded: " + css.length + " bytes" +
+                    (critical != null ? ", critical part " + critical.length + " bytes" : ""));
+            } else {
+                android.util.Log.e(TAG, "CSS NOT loaded - file missing or error");
+            }
+            
+            if (snapshot != null) {
+                android.util.Log.d(TAG, "Config loaded: " + snapshot.size() + " keys");
+            } else {
+                android.util.Log.e(TAG, "Config NOT loaded - file missing or error");
+            }
+            
+            cdnAssetManifest = readCDNAssetManifest();
+            
+            if (cdnCache != null) {
+                // Never delays startup: the current copy is already in use
+                cordova.getThreadPool().execute(this::revalidateCDNStylesheet);
+            }
+        });
+    }
+
+    /**
+     * Ask the CDN for a newer stylesheet. A new version replaces the
+     * in-memory copy, so it applies from the next navigation (or launch).
+     */
+    private void revalidateCDNStylesheet() {
+        CDNStylesheetProcessor.Result fresh = cdnCache.revalidate(cdnProcessor);
+        if (fresh == null) {
+            return;
+        }
+        String hash = InjectionPayloadCache.contentHash(fresh.css);
+        if (hash.equals(cssHash)) {
+            return;
+        }
+        
+        // Critical part first: it is only ever injected together with the full stylesheet
+        criticalBytes = fresh.critical;
+        cssBytes = fresh.css;
+        cssHash = hash;
+        android.util.Log.d(TAG, "[CDN-Cache] New stylesheet (" + fresh.css.length + " bytes) applies from the next navigation");
+        
+        if (documentStartScript != null) {
+            registerDocumentStartScript();
+        }
+    }
+
+    /**
+     * Same url() resolution and critical split as downloadCDNResources.js, from the same preferences.
+     * index.html is only read when a refreshed stylesheet is large enough to split.
+     */
+    private CDNStylesheetProcessor createCDNStylesheetProcessor(String cdnResource) {
+        List<String> selectors = new ArrayList<>();
+        for (String selector : preferences.getString("CDN_CSS_CRITICAL_SELECTORS", "").split(",")) {
+            if (!selector.trim().isEmpty()) {
+                selectors.add(selector.trim());
+            }
+        }
+        int thresholdKB = preferences.getInteger("CDN_CSS_SPLIT_THRESHOLD_KB", DEFAULT_SPLIT_THRESHOLD_KB);
+        int criticalMaxKB = preferences.getInteger("CDN_CSS_CRITICAL_MAX_KB", DEFAULT_CRITICAL_MAX_KB);
+        return new CDNStylesheetProcessor(cdnResource, () -> {
+            byte[] html = readAssetOrNull(INDEX_HTML_PATH);
+            return html != null ? new String(html, StandardCharsets.UTF_8) : "";
+        }, selectors, thresholdKB * 1024, (criticalMaxKB > 0 ? criticalMaxKB : DEFAULT_CRITICAL_MAX_KB) * 1024);
+    }
+
+    /**
+     * Block until the asset preload has finished. Never call on the UI thread.
+     */
+    private void awaitAssetPreload() {
+        try {
+            assetPreload.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            android.util.Log.e(TAG, "Asset preload failed", e.getCause());
+        }
+    }
+
+    /**
+     * Run a task on the UI thread once assets are preloaded,
+     * without blocking the UI thread while waiting
+     */
+    private void runOnUiThreadWhenReady(final Runnable task) {
+        if (assetPreload.isDone()) {
+            cordova.getActivity().runOnUiThread(task);
+            return;
+        }
+        cordova.getThreadPool().execute(() -> {
+            awaitAssetPreload();
+            cordova.getActivity().runOnUiThread(task);
+        });
+    }
+
     /**
      * Start polling-based injection to ensure CSS/config loads
      * This runs every 200ms until successful or max attempts reached
@@ -121,163 +356,674 @@ public class CSSInjector extends CordovaPlugin {
         handler.post(new Runnable() {
             @Override
             public void run() {
-                if (injectionAttempts < MAX_INJECTION_ATTEMPTS) {
+                if (injectionConfirmed) {
+                    android.util.Log.d(TAG, "[Polling] Confirmed after " + injectionAttempts + " attempt(s) (payload cache: " +
+                        payloadCache.stats() + ")");
+                    reportMetrics();
+                    releaseDerivedPayloads();
+                } else if (injectionAttempts < MAX_INJECTION_ATTEMPTS) {
                     android.util.Log.d(TAG, "[Polling] Injection attempt #" + (injectionAttempts + 1));
                     
-                    // Try to inject
-                    injectBuildConfig();
-                    injectBackgroundColorCSS(backgroundColor);
-                    injectCSSIntoWebView();
+                    // Try to inject, the acknowledgement stops further attempts
+                    injectAll(() -> injectionConfirmed = true);
                     
                     injectionAttempts++;
                     
                     // Schedule next attempt
                     handler.postDelayed(this, 200);
                 } else {
-                    android.util.Log.d(TAG, "[Polling] Stopped after " + MAX_INJECTION_ATTEMPTS + " attempts");
+                    android.util.Log.d(TAG, "[Polling] Stopped after " + MAX_INJECTION_ATTEMPTS + " attempts (payload cache: " +
+                        payloadCache.stats() + ")");
+                    reportMetrics();
                 }
             }
         });
     }
 
     /**
-     * Build config script that will be injected into HTML <head>
+     * Inject config, background and CSS in a single evaluateJavascript round-trip.
+     * The script evaluates to which of them are present in the page;
+     * onConfirmed runs on the UI thread once all expected parts are.
      */
-    private void buildConfigScript() {
-        try {
-            JSONObject config = cachedConfig;
-            if (config == null) {
-                config = readConfigFromAssets();
-                cachedConfig = config;
+    private void injectAll(final Runnable onConfirmed) {
+        injectAll(onConfirmed, null);
+    }
+
+    /**
+     * Same as injectAll(onConfirmed); onNotConfirmed (may be null) runs on
+     * the UI thread when the acknowledgement came back negative
+     */
+    private void injectAll(final Runnable onConfirmed, final Runnable onNotConfirmed) {
+        runOnUiThreadWhenReady(() -> {
+            final long attemptStart = metrics.attemptStarted();
+            WebView view = getAndroidWebView();
+            if (view == null) {
+                // No evaluateJavascript available: separate loadUrl calls, no acknowledgement
+                injectBuildConfig();
+                injectBackgroundColorCSS(backgroundColor);
+                injectCSSIntoWebView();
+                metrics.attemptFinished(attemptStart, false);
+                return;
             }
             
-            if (config == null) {
-                android.util.Log.e(TAG, "Cannot build config script - no config available");
-                // Create empty config as fallback
-                config = new JSONObject();
-                config.put("error", "Config file not found");
+            String javascript = payloadCache.get("combined", configHash + cssHash + backgroundColor + virtualCSSEnabled,
+                this::buildCombinedInjectionScript);
+            metrics.recordPayloadSize(javascript.length());
+            view.evaluateJavascript(javascript, result -> {
+                boolean confirmed = isInjectionConfirmed(result);
+                metrics.attemptFinished(attemptStart, confirmed);
+                if (confirmed) {
+                    onConfirmed.run();
+                } else {
+                    android.util.Log.d(TAG, "[Ack] Not confirmed yet: " + result);
+                    if (onNotConfirmed != null) {
+                        onNotConfirmed.run();
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Config + background + CSS scripts followed by a presence check
+     * that becomes the evaluateJavascript result
+     */
+    private String buildCombinedInjectionScript() {
+        return InjectionCore.buildCombinedInjectionScript(injectedConfigJSON(), backgroundColor, cssBytes,
+            virtualCSSEnabled ? buildCSSHref() : null, criticalBytes);
+    }
+
+    private boolean isInjectionConfirmed(String result) {
+        if (result == null || result.isEmpty() || "null".equals(result)) {
+            return false;
+        }
+        try {
+            JSONObject presence = new JSONObject(result);
+            String href = presence.optString("href", null);
+            if (!InjectionCore.isAppDocument(href, getAppOrigin())) {
+                // Injected into the initial empty document, the app page still needs it
+                android.util.Log.d(TAG, "[Ack] Ignored answer from " + href + " (" + presence.optString("state") + ")");
+                return false;
             }
-            
-            // Add background color to config
-            if (backgroundColor != null && !backgroundColor.isEmpty()) {
-                config.put("backgroundColor", backgroundColor);
+            return presence.optBoolean("config") && presence.optBoolean("bg") && presence.optBoolean("css");
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The android.webkit.WebView behind Cordova's engine, or null for other engines
+     */
+    private WebView getAndroidWebView() {
+        if (webView == null || webView.getEngine() == null) {
+            return null;
+        }
+        return webView.getEngine().getView() instanceof WebView ? (WebView) webView.getEngine().getView() : null;
+    }
+
+    /**
+     * Drop the built scripts once the page has its payloads. Only the UTF-8
+     * bytes stay resident; the next navigation rebuilds what it needs.
+     */
+    private void releaseDerivedPayloads() {
+        payloadCache.clear();
+        android.util.Log.d(TAG, "[Memory] Released derived payloads, keeping " +
+            (cssBytes != null ? cssBytes.length : 0) + " CSS bytes");
+    }
+
+    private boolean hasCSS() {
+        byte[] css = cssBytes;
+        return css != null && css.length > 0;
+    }
+
+    private static boolean hasCriticalMarker(byte[] css) {
+        if (css.length < CRITICAL_MARKER.length) {
+            return false;
+        }
+        for (int i = 0; i < CRITICAL_MARKER.length; i++) {
+            if (css[i] != CRITICAL_MARKER[i]) {
+                return false;
             }
-            
-            String configJSON = config.toString();
-            
-            // Build inline script that runs IMMEDIATELY
-            configScript = "<script type='text/javascript'>" +
-                "(function(){" +
-                "try{" +
-                "var config=" + configJSON + ";" +
-                "window.CORDOVA_BUILD_CONFIG=config;" +
-                "window.AppConfig=config;" +
-                "console.log('[Inline-Config] Injected:',config);" +
-                "}catch(e){" +
-                "console.error('[Inline-Config] Failed:',e);" +
-                "}" +
-                "})();" +
-                "</script>";
-            
-            android.util.Log.d(TAG, "✓ Config script built (" + configScript.length() + " bytes)");
-        } catch (Exception e) {
-            android.util.Log.e(TAG, "Failed to build config script", e);
+        }
+        return true;
+    }
+
+    /**
+     * Log the metrics summary as one structured line, once per launch
+     */
+    private void reportMetrics() {
+        if (metrics.markReported()) {
+            android.util.Log.i(TAG, "[Metrics] " + metrics.toJSON(injectionMode, payloadCache));
         }
     }
 
     /**
-     * Build CSS inline script that will be injected into HTML <head>
+     * Whether this WebView can run document-start scripts. androidx.webkit itself is
+     * always there: plugin.xml adds it for every build, whatever CSS_INJECTION_MODE is.
      */
-    private void buildCSSInlineScript() {
+    private boolean isDocumentStartSupported() {
+        if (getAndroidWebView() == null) {
+            android.util.Log.w(TAG, "[DocStart] Android WebView not available, falling back to polling");
+            return false;
+        }
         try {
-            String cssContent = cachedCSS;
-            if (cssContent == null || cssContent.isEmpty()) {
-                cssContent = readCSSFromAssets();
-                cachedCSS = cssContent;
+            if (WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+                return true;
+            }
+            android.util.Log.w(TAG, "[DocStart] DOCUMENT_START_SCRIPT not supported, falling back to polling");
+        } catch (RuntimeException e) {
+            // No WebView provider installed, or it is being updated
+            android.util.Log.w(TAG, "[DocStart] WebView provider unavailable, falling back to polling", e);
+        }
+        return false;
+    }
+
+    /**
+     * Register config, background and CSS once as a document-start script.
+     * If the first page already started loading while assets were read,
+     * it gets a single acknowledged injection to catch up.
+     */
+    private void registerDocumentStartScript() {
+        runOnUiThreadWhenReady(() -> {
+            WebView view = getAndroidWebView();
+            if (view == null) {
+                return;
             }
             
-            if (cssContent == null || cssContent.isEmpty()) {
-                android.util.Log.e(TAG, "Cannot build CSS script - no CSS content");
+            // Origin rules only match http(s) origins, never file:// or custom schemes
+            if (launchUrl != null && InjectionCore.originOf(launchUrl) == null) {
+                android.util.Log.w(TAG, "[DocStart] App is served from " + launchUrl +
+                    ", which no origin rule matches, falling back to polling");
+                fallBackToPolling();
                 return;
             }
             
-            // Encode CSS to base64 for safe inline injection
-            byte[] cssBytes = cssContent.getBytes(StandardCharsets.UTF_8);
-            String base64CSS = Base64.encodeToString(cssBytes, Base64.NO_WRAP);
+            // Re-registration replaces the script with the current payloads
+            boolean firstRegistration = documentStartScript == null;
+            if (!firstRegistration) {
+                documentStartScript.remove();
+                documentStartScript = null;
+            }
+            
+            String script = InjectionCore.buildDocumentStartScript(injectedConfigJSON(), backgroundColor, cssBytes, criticalBytes);
+            metrics.recordPayloadSize(script.length());
             
-            // Build inline script
-            cssInlineScript = "<script type='text/javascript'>" +
-                "(function(){" +
-                "try{" +
-                "var b64='" + base64CSS + "';" +
-                "var css=decodeURIComponent(escape(atob(b64)));" +
-                "var s=document.createElement('style');" +
-                "s.id='cdn-styles-inline';" +
-                "s.textContent=css;" +
-                "(document.head||document.getElementsByTagName('head')[0]).appendChild(s);" +
-                "console.log('[Inline-CSS] Injected',css.length,'bytes');" +
-                "}catch(e){" +
-                "console.error('[Inline-CSS] Failed:',e);" +
-                "}" +
-                "})();" +
-                "</script>";
+            try {
+                documentStartScript = WebViewCompat.addDocumentStartJavaScript(view, script, Collections.singleton(getAppOrigin()));
+                android.util.Log.d(TAG, "[DocStart] Registered " + script.length() + " chars for " + getAppOrigin());
+            } catch (RuntimeException e) {
+                android.util.Log.e(TAG, "[DocStart] Registration failed, falling back to polling", e);
+                fallBackToPolling();
+                return;
+            }
             
-            android.util.Log.d(TAG, "✓ CSS inline script built (" + cssContent.length() + " bytes CSS)");
-        } catch (Exception e) {
-            android.util.Log.e(TAG, "Failed to build CSS inline script", e);
+            if (firstRegistration && view.getUrl() != null) {
+                injectAll(() -> {
+                    metrics.recordConfirmed(System.nanoTime());
+                    reportMetrics();
+                    releaseDerivedPayloads();
+                });
+            } else if (firstRegistration) {
+                // No page yet: every document starts styled from here on
+                metrics.recordConfirmed(System.nanoTime());
+                reportMetrics();
+            }
+        });
+    }
+
+    /**
+     * Leave document-start mode: runs, and is measured, exactly like polling mode from here on
+     */
+    private void fallBackToPolling() {
+        injectionMode = MODE_POLLING;
+        initialInjectionDone = false;
+        injectionConfirmed = false;
+        injectionAttempts = 0;
+        startPollingInjection();
+    }
+
+    /**
+     * Origin the app is served from: that of the launch URL once the preload has
+     * read it, otherwise as configured by the scheme/hostname preferences
+     */
+    private String getAppOrigin() {
+        String origin = InjectionCore.originOf(launchUrl);
+        if (origin != null) {
+            return origin;
         }
+        String scheme = preferences.getString("scheme", "https");
+        String hostname = preferences.getString("hostname", "localhost");
+        return scheme + "://" + hostname;
     }
 
     /**
-     * Read HTML file from assets (www/index.html)
+     * The URL Cordova starts with: config.xml's content src, resolved against
+     * scheme/hostname when relative. Null if config.xml cannot be read.
      */
-    private String readHTMLFromAssets() {
-        StringBuilder content = new StringBuilder();
+    String readLaunchUrl() {
         try {
-            InputStream inputStream = cordova.getActivity().getAssets().open(INDEX_HTML_PATH);
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8)
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+            ConfigXmlParser parser = new ConfigXmlParser();
+            parser.parse(cordova.getActivity());
+            String url = parser.getLaunchUrl();
+            android.util.Log.d(TAG, "Launch URL: " + url);
+            return url;
+        } catch (RuntimeException e) {
+            android.util.Log.w(TAG, "Could not read the launch URL from config.xml", e);
+            return null;
+        }
+    }
+
+    /**
+     * Replace Cordova's WebViewClient with one that injects on page lifecycle events.
+     * Only possible with the default system WebView engine.
+     */
+    private boolean installInjectorWebViewClient() {
+        if (webView == null || !(webView.getEngine() instanceof SystemWebViewEngine)) {
+            android.util.Log.w(TAG, "[Lifecycle] SystemWebViewEngine not available, falling back to polling");
+            return false;
+        }
+        
+        SystemWebViewEngine engine = (SystemWebViewEngine) webView.getEngine();
+        if (!(engine.getView() instanceof SystemWebView)) {
+            android.util.Log.w(TAG, "[Lifecycle] SystemWebView not available, falling back to polling");
+            return false;
+        }
+        
+        ((SystemWebView) engine.getView()).setWebViewClient(new InjectorWebViewClient(engine));
+        android.util.Log.d(TAG, "[Lifecycle] WebViewClient installed");
+        return true;
+    }
+
+    /**
+     * Inject config, background and CSS once for the current navigation
+     */
+    private void injectForCurrentPage(String trigger, String url) {
+        // Only retried after a negative acknowledgement or none within ACK_TIMEOUT_MS
+        if (pageConfirmed || pageAckPending || pageInjectionCount >= MAX_PAGE_INJECTIONS) {
+            return;
+        }
+        
+        if (url != null && url.equals(lastInterceptedUrl)) {
+            // Config and CSS were already spliced into <head>
+            pageInjectionCount++;
+            pageConfirmed = true;
+            metrics.recordConfirmed(System.nanoTime());
+            reportMetrics();
+            releaseDerivedPayloads();
+            android.util.Log.d(TAG, "[Intercept] Page #" + pageLoadCount + " served with inline head: " + url);
+            return;
+        }
+        
+        final int page = pageLoadCount;
+        final int attempt = ++pageInjectionCount;
+        pageAckPending = true;
+        injectAll(() -> {
+            if (page == pageLoadCount) {
+                pageAckPending = false;
+                pageConfirmed = true;
+                android.util.Log.d(TAG, "[Lifecycle] Page #" + page + " confirmed");
+                reportMetrics();
+                releaseDerivedPayloads();
             }
+        }, () -> onPageAckMissing(page, attempt, "negative ack", url));
+        handler.postDelayed(() -> onPageAckMissing(page, attempt, "ack timeout", url), ACK_TIMEOUT_MS);
+        
+        android.util.Log.d(TAG, "[Lifecycle] Injected on " + trigger + " (page #" + pageLoadCount + "): " + url);
+    }
+
+    /**
+     * The page injection was not confirmed: retry now if the page has finished
+     * loading, otherwise onPageFinished does
+     */
+    private void onPageAckMissing(int page, int attempt, String reason, String url) {
+        // Answers for an earlier page or an earlier attempt are stale
+        if (page != pageLoadCount || attempt != pageInjectionCount || !pageAckPending) {
+            return;
+        }
+        pageAckPending = false;
+        android.util.Log.d(TAG, "[Lifecycle] Page #" + page + " " + reason);
+        if (pageFinished) {
+            injectForCurrentPage(reason, url);
+        }
+    }
+
+    /**
+     * Whether a request targets the app's www/index.html
+     * (https://localhost/index.html or file:///android_asset/www/index.html)
+     */
+    private boolean isIndexHtmlRequest(WebResourceRequest request) {
+        if (!request.isForMainFrame() || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return false;
+        }
+        String path = request.getUrl().getPath();
+        return "/index.html".equals(path) || ("/android_asset/" + INDEX_HTML_PATH).equals(path);
+    }
+
+    /**
+     * Serve www/index.html with config and CSS spliced into <head>.
+     * The document is streamed from assets, never buffered as a String.
+     */
+    private WebResourceResponse interceptIndexHtml(WebResourceRequest request) {
+        if (configSnapshot == null && !hasCSS()) {
+            return null;
+        }
+        
+        try {
+            String head = payloadCache.get("head", configHash + cssHash + backgroundColor, this::buildHeadMarkup);
             
-            reader.close();
-            inputStream.close();
-            
-            android.util.Log.d(TAG, "Read HTML from assets: " + content.length() + " chars");
-            return content.toString();
-            
+            InputStream html = openAsset(INDEX_HTML_PATH);
+            InputStream body = new HeadInjectingInputStream(html, head.getBytes(StandardCharsets.UTF_8));
+            lastInterceptedUrl = request.getUrl().toString();
+            android.util.Log.d(TAG, "[Intercept] Serving " + INDEX_HTML_PATH + " with " + head.length() + " chars in <head>");
+            return new WebResourceResponse("text/html", "UTF-8", body);
         } catch (IOException e) {
-            android.util.Log.e(TAG, "Failed to read HTML from assets: " + INDEX_HTML_PATH, e);
+            android.util.Log.e(TAG, "[Intercept] Failed to open " + INDEX_HTML_PATH, e);
             return null;
         }
     }
 
     /**
-     * Read InputStream to String
+     * Markup spliced after <head>: config script, background style and stylesheet link.
+     * A split stylesheet gets its critical part inline and the link after first paint.
      */
-    private String readStream(InputStream is) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line).append("\n");
+    private String buildHeadMarkup() {
+        StringBuilder head = new StringBuilder();
+        String configScript = buildConfigInlineScript();
+        if (configScript != null) {
+            head.append(configScript);
+        }
+        head.append(buildBackgroundStyleTag());
+        byte[] critical = criticalBytes;
+        if (hasCSS() && critical != null) {
+            head.append(InjectionCore.buildCriticalStyleTag(critical));
+            head.append(InjectionCore.buildDeferredCSSLinkTag(buildCSSHref()));
+        } else if (hasCSS()) {
+            head.append("<link id='cdn-styles' rel='stylesheet' href='").append(buildCSSHref()).append("'>");
+        }
+        return head.toString();
+    }
+
+    /**
+     * Serve the stylesheet in use once the preload has loaded it.
+     * Only a request for its own version is cached as immutable: a page built
+     * before a CDN refresh still asks for the old version, and must not pin
+     * the new bytes under that URL.
+     */
+    private WebResourceResponse serveVirtualCSS(WebResourceRequest request) {
+        awaitAssetPreload();
+        byte[] loaded = cssBytes;
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        if (loaded == null) {
+            android.util.Log.e(TAG, "[Virtual-CSS] No stylesheet loaded");
+            return new WebResourceResponse("text/css", "UTF-8", 404, "Not Found", headers, new ByteArrayInputStream(new byte[0]));
+        }
+        
+        // Hash the bytes being served: cssBytes and cssHash are replaced one after the other
+        String version = request.getUrl().getQueryParameter("v");
+        if (version != null && version.equals(InjectionPayloadCache.contentHash(loaded))) {
+            headers.put("Cache-Control", "public, max-age=31536000, immutable");
+        } else {
+            android.util.Log.d(TAG, "[Virtual-CSS] Version " + version + " is not current, serving uncached");
+            headers.put("Cache-Control", "no-cache");
+        }
+        return new WebResourceResponse("text/css", "UTF-8", 200, "OK", headers, new ByteArrayInputStream(loaded));
+    }
+
+    /**
+     * Serve a font/image the stylesheet references from the bundled copy.
+     * Files are named by content hash, so they never change and are cached as immutable.
+     */
+    private WebResourceResponse serveCDNAsset(WebResourceRequest request) {
+        JSONObject manifest = cdnAssetManifest;
+        if (manifest == null || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        JSONObject entry = manifest.optJSONObject(InjectionCore.normalizeUrl(request.getUrl().toString()));
+        if (entry == null) {
+            return null;
+        }
+        
+        String file = entry.optString("file", null);
+        try {
+            InputStream asset = openAsset(CDN_ASSETS_DIR + file);
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "public, max-age=31536000, immutable");
+            // Fonts are loaded with CORS from the app origin
+            headers.put("Access-Control-Allow-Origin", "*");
+            return new WebResourceResponse(entry.optString("type", "application/octet-stream"), null, 200, "OK", headers, asset);
+        } catch (IOException e) {
+            android.util.Log.e(TAG, "[CDN-Assets] Missing bundled file " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Serve a www asset requested with the content hash from asset-manifest.json
+     * (js/app.js?v=<hash>). The URL changes whenever the file does, so it is
+     * cached as immutable; any other version is left to the default loader.
+     */
+    private WebResourceResponse serveFingerprintedAsset(WebResourceRequest request) {
+        String version = request.getUrl().getQueryParameter("v");
+        if (version == null || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        JSONObject manifest = loadAssetManifest();
+        if (manifest == null) {
+            return null;
+        }
+        String path = wwwRelativePath(request.getUrl().getPath());
+        JSONObject entry = path != null ? manifest.optJSONObject(path) : null;
+        if (entry == null || !version.equals(entry.optString("hash"))) {
+            return null;
+        }
+        
+        try {
+            InputStream asset = openAsset(WWW_DIR + path);
+            String type = entry.optString("type", "application/octet-stream");
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "public, max-age=31536000, immutable");
+            headers.put("Access-Control-Allow-Origin", "*");
+            return new WebResourceResponse(type, type.startsWith("text/") ? "UTF-8" : null, 200, "OK", headers, asset);
+        } catch (IOException e) {
+            android.util.Log.e(TAG, "[Fingerprint] Missing www file " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Path inside www/ for https://localhost/<path> or file:///android_asset/www/<path>
+     */
+    private static String wwwRelativePath(String urlPath) {
+        if (urlPath == null) {
+            return null;
+        }
+        String assetPrefix = "/android_asset/" + WWW_DIR;
+        String path = urlPath.startsWith(assetPrefix) ? urlPath.substring(assetPrefix.length()) : urlPath;
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path.isEmpty() ? null : path;
+    }
+
+    /**
+     * The fingerprint manifest, read on the first versioned request
+     * instead of during the launch preload
+     */
+    private synchronized JSONObject loadAssetManifest() {
+        if (!assetManifestRead) {
+            assetManifest = readAssetManifest();
+            assetManifestRead = true;
+        }
+        return assetManifest;
+    }
+
+    private JSONObject readAssetManifest() {
+        byte[] content = readAssetOrNull(ASSET_MANIFEST_PATH);
+        if (content == null) {
+            android.util.Log.w(TAG, "[Fingerprint] " + ASSET_MANIFEST_PATH + " missing, fingerprinting hook did not run");
+            return null;
+        }
+        try {
+            JSONObject manifest = new JSONObject(new String(content, StandardCharsets.UTF_8));
+            android.util.Log.d(TAG, "[Fingerprint] " + manifest.length() + " fingerprinted asset(s)");
+            return manifest;
+        } catch (JSONException e) {
+            android.util.Log.e(TAG, "[Fingerprint] Invalid " + ASSET_MANIFEST_PATH, e);
+            return null;
+        }
+    }
+
+    private JSONObject readCDNAssetManifest() {
+        if (!cdnManifestPresent) {
+            return null;
+        }
+        try {
+            JSONObject bundled = new JSONObject(new String(readAssetBytes(CDN_MANIFEST_PATH), StandardCharsets.UTF_8));
+            // Keys are URLs as Node resolved them; requests are looked up in the same normal form
+            JSONObject manifest = new JSONObject();
+            Iterator<String> urls = bundled.keys();
+            while (urls.hasNext()) {
+                String url = urls.next();
+                manifest.put(InjectionCore.normalizeUrl(url), bundled.get(url));
+            }
+            android.util.Log.d(TAG, "[CDN-Assets] " + manifest.length() + " bundled asset(s)");
+            return manifest;
+        } catch (IOException e) {
+            // The stylesheet references no assets
+            android.util.Log.d(TAG, "[CDN-Assets] No bundled assets");
+            return null;
+        } catch (JSONException e) {
+            android.util.Log.e(TAG, "[CDN-Assets] Invalid " + CDN_MANIFEST_PATH, e);
+            return null;
+        }
+    }
+
+    /**
+     * Versioned URL of the virtual stylesheet, relative to the page origin
+     */
+    private String buildCSSHref() {
+        return VIRTUAL_CSS_PATH + "?v=" + cssHash;
+    }
+
+    /**
+     * Background <style> tag matching injectBackgroundColorCSS()
+     */
+    private String buildBackgroundStyleTag() {
+        if (backgroundColor == null || backgroundColor.isEmpty()) {
+            return "";
+        }
+        return "<style id='cordova-bg'>" + InjectionCore.buildBackgroundCSS(backgroundColor) + "</style>";
+    }
+
+
+    /**
+     * WebViewClient that injects exactly once per navigation and serves
+     * the virtual stylesheet and bundled CDN assets.
+     * onPageCommitVisible (API 23+) is the earliest point where the new document
+     * accepts scripts; onPageFinished covers older WebViews.
+     * In intercept mode index.html is rewritten on the fly instead.
+     */
+    private class InjectorWebViewClient extends SystemWebViewClient {
+
+        InjectorWebViewClient(SystemWebViewEngine parentEngine) {
+            super(parentEngine);
+        }
+
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+            // Called on a background thread, safe to wait for the preload
+            if (VIRTUAL_CSS_PATH.equals(request.getUrl().getPath())) {
+                return serveVirtualCSS(request);
+            }
+            if (!request.isForMainFrame()) {
+                awaitAssetPreload();
+                WebResourceResponse response = serveCDNAsset(request);
+                if (response == null && assetFingerprinting) {
+                    response = serveFingerprintedAsset(request);
+                }
+                if (response != null) {
+                    return response;
+                }
+            }
+            if (MODE_INTERCEPT.equals(injectionMode) && isIndexHtmlRequest(request)) {
+                awaitAssetPreload();
+                WebResourceResponse response = interceptIndexHtml(request);
+                if (response != null) {
+                    return response;
+                }
+            }
+            return super.shouldInterceptRequest(view, request);
+        }
+
+        @Override
+        public void onPageStarted(WebView view, String url, Bitmap favicon) {
+            super.onPageStarted(view, url, favicon);
+            if (!lifecycleInjection) {
+                return;
+            }
+            pageLoadCount++;
+            pageInjectionCount = 0;
+            pageConfirmed = false;
+            pageAckPending = false;
+            pageFinished = false;
+        }
+
+        @Override
+        public void onPageCommitVisible(WebView view, String url) {
+            super.onPageCommitVisible(view, url);
+            if (!lifecycleInjection) {
+                return;
+            }
+            injectForCurrentPage("onPageCommitVisible", url);
+        }
+
+        @Override
+        public void onPageFinished(WebView view, String url) {
+            super.onPageFinished(view, url);
+            if (!lifecycleInjection) {
+                return;
+            }
+            pageFinished = true;
+            injectForCurrentPage("onPageFinished", url);
+            android.util.Log.d(TAG, "[Lifecycle] Page #" + pageLoadCount + " finished with " +
+                pageInjectionCount + " injection(s) (payload cache: " + payloadCache.stats() + ")");
+        }
+    }
+
+    /**
+     * Config script for HTML <head>, built from the snapshot when needed
+     */
+    private String buildConfigInlineScript() {
+        try {
+            String configJSON = injectedConfigJSON();
+            if (configJSON == null) {
+                android.util.Log.e(TAG, "Cannot build config script - no config available");
+                // Create empty config as fallback
+                JSONObject config = new JSONObject();
+                config.put("error", "Config file not found");
+                if (backgroundColor != null && !backgroundColor.isEmpty()) {
+                    config.put("backgroundColor", backgroundColor);
+                }
+                configJSON = config.toString();
+            }
+            
+            // Build inline script that runs IMMEDIATELY
+            return InjectionCore.buildConfigInlineScript(configJSON);
+        } catch (Exception e) {
+            android.util.Log.e(TAG, "Failed to build config script", e);
+            return null;
         }
-        return sb.toString();
     }
 
     @Override
     public void onResume(boolean multitasking) {
         super.onResume(multitasking);
         
+        // Lifecycle mode re-injects per navigation, nothing to do here
         if (!initialInjectionDone) {
             // Inject immediately
-            injectBuildConfig();
-            injectBackgroundColorCSS(backgroundColor);
-            injectCSSIntoWebView();
+            injectAll(() -> injectionConfirmed = true);
             initialInjectionDone = true;
             android.util.Log.d(TAG, "onResume - immediate injection");
         }
@@ -285,92 +1031,85 @@ public class CSSInjector extends CordovaPlugin {
         android.util.Log.d(TAG, "onResume");
     }
 
+    @Override
+    public void onDestroy() {
+        if (frameMonitor != null) {
+            frameMonitor.stop();
+        }
+        if (documentStartScript != null) {
+            documentStartScript.remove();
+            documentStartScript = null;
+        }
+        super.onDestroy();
+    }
+
     /**
      * Inject build config from JSON file into window variable
      */
     private void injectBuildConfig() {
-        cordova.getActivity().runOnUiThread(() -> {
-            try {
-                JSONObject config = cachedConfig;
-                if (config == null) {
-                    config = readConfigFromAssets();
-                    cachedConfig = config;
-                }
-                
-                if (config == null) {
-                    android.util.Log.w(TAG, "No config found, skipping injection");
-                    return;
-                }
-                
-                if (backgroundColor != null && !backgroundColor.isEmpty()) {
-                    config.put("backgroundColor", backgroundColor);
-                }
-                
-                String configJSON = config.toString();
-                String escapedJSON = configJSON
-                    .replace("\\", "\\\\")
-                    .replace("'", "\\'")
-                    .replace("\"", "\\\"")
-                    .replace("\n", "\\n");
-                
-                CordovaWebView cordovaWebView = this.webView;
-                if (cordovaWebView != null) {
-                    String javascript = "(function() {" +
-                        "  try {" +
-                        "    if (typeof window === 'undefined') return;" +
-                        "    var config = JSON.parse(\"" + escapedJSON + "\");" +
-                        "    window.CORDOVA_BUILD_CONFIG = config;" +
-                        "    window.AppConfig = config;" +
-                        "    console.log('[Native-JS] Build config injected:', config);" +
-                        "    " +
-                        "    if (typeof CustomEvent !== 'undefined') {" +
-                        "      window.dispatchEvent(new CustomEvent('cordova-config-ready', { detail: config }));" +
-                        "    }" +
-                        "  } catch(e) {" +
-                        "    console.error('[Native-JS] Config injection failed:', e);" +
-                        "  }" +
-                        "})();";
-                    
+        runOnUiThreadWhenReady(() -> {
+            if (configSnapshot == null) {
+                android.util.Log.w(TAG, "No config found, skipping injection");
+                return;
+            }
+            
+            CordovaWebView cordovaWebView = this.webView;
+            if (cordovaWebView != null) {
+                String javascript = payloadCache.get("config", configHash + backgroundColor, this::buildConfigInjectionScript);
+                if (javascript != null) {
                     cordovaWebView.loadUrl("javascript:" + javascript);
                     android.util.Log.d(TAG, "[JS] Config injected");
                 }
-            } catch (Exception e) {
-                android.util.Log.e(TAG, "Failed to inject build config", e);
             }
         });
     }
 
+    private String buildConfigInjectionScript() {
+        String configJSON = injectedConfigJSON();
+        return configJSON != null ? InjectionCore.buildConfigInjectionScript(configJSON) : null;
+    }
+
     /**
-     * Read config JSON from assets
+     * JSON pushed into pages: the whole snapshot, or only the inline keys
+     * with CONFIG_INJECTION=lazy. Null if there is no config.
      */
-    private JSONObject readConfigFromAssets() {
-        StringBuilder content = new StringBuilder();
-        
+    private String injectedConfigJSON() {
+        BuildConfigSnapshot snapshot = configSnapshot;
+        if (snapshot == null) {
+            return null;
+        }
+        return lazyConfig ? snapshot.select(inlineConfigKeys).toString() : snapshot.toJSON();
+    }
+
+    private byte[] readAssetOrNull(String path) {
         try {
-            InputStream inputStream = cordova.getActivity().getAssets().open(CONFIG_FILE_PATH);
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8)
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line);
-            }
-            
-            reader.close();
-            inputStream.close();
-            
-            return new JSONObject(content.toString());
-            
+            return readAssetBytes(path);
         } catch (IOException e) {
-            android.util.Log.e(TAG, "Config file not found: " + CONFIG_FILE_PATH, e);
-            return null;
-        } catch (JSONException e) {
-            android.util.Log.e(TAG, "Failed to parse config JSON", e);
+            android.util.Log.e(TAG, "Failed to read asset: " + path, e);
             return null;
         }
     }
 
+    /**
+     * Every asset the plugin reads is opened here
+     */
+    InputStream openAsset(String path) throws IOException {
+        return cordova.getActivity().getAssets().open(path);
+    }
+
+    /**
+     * Read an asset in one pass into a buffer sized from available()
+     */
+    private byte[] readAssetBytes(String path) throws IOException {
+        InputStream inputStream = openAsset(path);
+        try {
+            return InjectionCore.readFully(inputStream, inputStream.available());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+
     @Override
     public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
         if (action.equals("injectCSS")) {
@@ -378,11 +1117,30 @@ public class CSSInjector extends CordovaPlugin {
             callbackContext.success("CSS injected");
             return true;
         } else if (action.equals("getConfig")) {
-            JSONObject config = cachedConfig != null ? cachedConfig : readConfigFromAssets();
-            if (config != null) {
-                callbackContext.success(config);
+            // No arguments: whole config; otherwise only the requested key(s)
+            final Object keys = args.opt(0);
+            cordova.getThreadPool().execute(() -> {
+                awaitAssetPreload();
+                BuildConfigSnapshot snapshot = configSnapshot;
+                if (snapshot == null) {
+                    callbackContext.error("Config not available");
+                } else if (keys instanceof JSONArray) {
+                    callbackContext.success(snapshot.select((JSONArray) keys));
+                } else if (keys instanceof String) {
+                    callbackContext.success(snapshot.select(Collections.singletonList((String) keys)));
+                } else {
+                    callbackContext.success(snapshot.toJSONObject());
+                }
+            });
+            return true;
+        } else if (action.equals("getMetrics")) {
+            callbackContext.success(new JSONObject(metrics.toJSON(injectionMode, payloadCache)));
+            return true;
+        } else if (action.equals("getFrameMetrics")) {
+            if (frameMonitor != null) {
+                callbackContext.success(new JSONObject(frameMonitor.toJSON()));
             } else {
-                callbackContext.error("Config not available");
+                callbackContext.error("Frame metrics disabled (set the FRAME_METRICS preference to true)");
             }
             return true;
         } else if (action.equals("injectBackground")) {
@@ -433,36 +1191,8 @@ public class CSSInjector extends CordovaPlugin {
                 
                 CordovaWebView cordovaWebView = this.webView;
                 if (cordovaWebView != null) {
-                    String css = "html, body, #root, #app, .app-container, .screen, .page-wrapper { " +
-                        "background-color: " + bgColor + " !important; " +
-                        "background: " + bgColor + " !important; " +
-                        "margin: 0; padding: 0; " +
-                        "}";
-                    
-                    String javascript = "(function() {" +
-                        "  try {" +
-                        "    if (typeof document === 'undefined') return;" +
-                        "    if (document.documentElement) {" +
-                        "      document.documentElement.style.backgroundColor = '" + bgColor + "';" +
-                        "    }" +
-                        "    if (document.body) {" +
-                        "      document.body.style.backgroundColor = '" + bgColor + "';" +
-                        "    }" +
-                        "    " +
-                        "    var target = document.head || document.getElementsByTagName('head')[0];" +
-                        "    if (target) {" +
-                        "      var s = document.getElementById('cordova-bg');" +
-                        "      if (!s) {" +
-                        "        s = document.createElement('style');" +
-                        "        s.id = 'cordova-bg';" +
-                        "        s.textContent = '" + css.replace("'", "\\'") + "';" +
-                        "        target.insertBefore(s, target.firstChild);" +
-                        "        console.log('[Native-BG] CSS injected: " + bgColor + "');" +
-                        "      }" +
-                        "    }" +
-                        "  } catch(e) { console.error('[Native-BG] Failed:', e); }" +
-                        "})();";
-                    
+                    String javascript = payloadCache.get("background", bgColor,
+                        () -> InjectionCore.buildBackgroundInjectionScript(bgColor));
                     cordovaWebView.loadUrl("javascript:" + javascript);
                 }
             } catch (Exception e) {
@@ -471,21 +1201,19 @@ public class CSSInjector extends CordovaPlugin {
         });
     }
 
+
     private void injectCSSIntoWebView() {
-        cordova.getActivity().runOnUiThread(() -> {
+        runOnUiThreadWhenReady(() -> {
             try {
-                String cssContent = cachedCSS;
-                if (cssContent == null || cssContent.isEmpty()) {
-                    cssContent = readCSSFromAssets();
-                    cachedCSS = cssContent;
-                }
-                
-                if (cssContent != null && !cssContent.isEmpty()) {
+                final byte[] css = cssBytes;
+                if (css != null && css.length > 0) {
                     CordovaWebView cordovaWebView = this.webView;
                     if (cordovaWebView != null) {
-                        String javascript = buildCSSInjectionScript(cssContent);
+                        String javascript = virtualCSSEnabled
+                            ? payloadCache.get("css-link", cssHash, () -> InjectionCore.buildCSSLinkScript(buildCSSHref()))
+                            : payloadCache.get("css", cssHash, () -> InjectionCore.buildCSSInjectionScript(css));
                         cordovaWebView.loadUrl("javascript:" + javascript);
-                        android.util.Log.d(TAG, "[JS] CSS injected (" + cssContent.length() + " bytes)");
+                        android.util.Log.d(TAG, "[JS] CSS injected (" + css.length + " bytes)");
                     }
                 } else {
                     android.util.Log.e(TAG, "Cannot inject CSS - content is empty or null");
@@ -496,94 +1224,5 @@ public class CSSInjector extends CordovaPlugin {
         });
     }
 
-    private String readCSSFromAssets() {
-        StringBuilder cssContent = new StringBuilder();
-        try {
-            InputStream inputStream = cordova.getActivity().getAssets().open(CSS_FILE_PATH);
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8)
-            );
-            String line;
-            while ((line = reader.readLine()) != null) {
-                cssContent.append(line).append("\n");
-            }
-            reader.close();
-            inputStream.close();
-            return cssContent.toString();
-        } catch (IOException e) {
-            android.util.Log.e(TAG, "Failed to read CSS from: " + CSS_FILE_PATH, e);
-            return null;
-        }
-    }
 
-    private String buildCSSInjectionScript(String cssContent) {
-        try {
-            byte[] cssBytes = cssContent.getBytes(StandardCharsets.UTF_8);
-            String base64CSS = Base64.encodeToString(cssBytes, Base64.NO_WRAP);
-            
-            return "(function() {" +
-                   "  function inject() {" +
-                   "    try {" +
-                   "      if (typeof document === 'undefined') return;" +
-                   "      var target = document.head || document.getElementsByTagName('head')[0] || document.documentElement;" +
-                   "      if (!target) {" +
-                   "        setTimeout(inject, 100);" +
-                   "        return;" +
-                   "      }" +
-                   "      if (!document.getElementById('cdn-styles')) {" +
-                   "        var b64 = '" + base64CSS + "';" +
-                   "        var css = decodeURIComponent(escape(atob(b64)));" +
-                   "        var s = document.createElement('style');" +
-                   "        s.id = 'cdn-styles';" +
-                   "        s.textContent = css;" +
-                   "        target.appendChild(s);" +
-                   "        console.log('[Native-CSS] Loaded (" + cssContent.length() + " bytes)');" +
-                   "      }" +
-                   "    } catch(e) { console.error('[Native-CSS] Failed:', e); }" +
-                   "  }" +
-                   "  if (document.readyState === 'loading') {" +
-                   "    document.addEventListener('DOMContentLoaded', inject);" +
-                   "  } else {" +
-                   "    inject();" +
-                   "  }" +
-                   "})();";
-        } catch (Exception e) {
-            return buildFallbackInjectionScript(cssContent);
-        }
-    }
-
-    private String buildFallbackInjectionScript(String cssContent) {
-        String escaped = cssContent
-            .replace("\\", "\\\\")
-            .replace("'", "\\'")
-            .replace("\"", "\\\"")
-            .replace("\n", "\\n")
-            .replace("\r", "")
-            .replace("\t", "\\t");
-        
-        return "(function() {" +
-               "  function inject() {" +
-               "    try {" +
-               "      if (typeof document === 'undefined') return;" +
-               "      var target = document.head || document.getElementsByTagName('head')[0] || document.documentElement;" +
-               "      if (!target) {" +
-               "        setTimeout(inject, 100);" +
-               "        return;" +
-               "      }" +
-               "      if (!document.getElementById('cdn-styles')) {" +
-               "        var s = document.createElement('style');" +
-               "        s.id = 'cdn-styles';" +
-               "        s.textContent = '" + escaped + "';" +
-               "        target.appendChild(s);" +
-               "        console.log('[Native-CSS] Loaded');" +
-               "      }" +
-               "    } catch(e) { console.error('[Native-CSS] Failed:', e); }" +
-               "  }" +
-               "  if (document.readyState === 'loading') {" +
-               "    document.addEventListener('DOMContentLoaded', inject);" +
-               "  } else {" +
-               "    inject();" +
-               "  }" +
-               "})();";
-    }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.util.Locale;
+
+/**
+ * Frames rendered from plugin start until the injected styles are confirmed,
+ * to tell whether a background/flash fix actually worked.
+ * API 24+ uses the window's frame metrics (frames actually drawn); older
+ * versions and windows that are not hardware accelerated count
+ * Choreographer vsync callbacks, an upper bound.
+ * Stops at the first frame that starts after the confirmation, or after
+ * MAX_FRAMES. start() and stop() must run on the UI thread.
+ */
+final class FirstFrameMonitor {
+
+    private static final String TAG = "CSSInjector";
+    // About 10s at 60Hz, for launches where styles are never confirmed
+    private static final int MAX_FRAMES = 600;
+    private static final long SLOW_FRAME_NANOS = 16_700_000L;
+
+    private final InjectionMetrics metrics;
+    private String source = null;
+    private int framesBeforeStyled = 0;
+    private int slowFramesBeforeStyled = 0;
+    private long firstFrameNanos = -1;
+    private long styledFrameNanos = -1;
+    private boolean finished = false;
+
+    private Window window = null;
+    private Window.OnFrameMetricsAvailableListener frameListener = null;
+    private Choreographer.FrameCallback frameCallback = null;
+
+    FirstFrameMonitor(InjectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void start(Window window) {
+        if (window != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && startFrameMetrics(window)) {
+            source = "frameMetrics";
+        } else {
+            source = "choreographer";
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos, frameTimeNanos, 0);
+                    if (!isFinished()) {
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                }
+            };
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+        android.util.Log.d(TAG, "[Frames] Monitoring first frames with " + source);
+    }
+
+    /**
+     * Frame metrics need a hardware-accelerated window; false if this one is not
+     */
+    private boolean startFrameMetrics(Window window) {
+        Window.OnFrameMetricsAvailableListener listener = (w, frame, dropped) -> onFrameMetrics(frame);
+        try {
+            window.addOnFrameMetricsAvailableListener(listener, new Handler(Looper.getMainLooper()));
+        } catch (IllegalStateException e) {
+            android.util.Log.w(TAG, "[Frames] Frame metrics unavailable (" + e.getMessage() + "), using Choreographer");
+            return false;
+        }
+        this.window = window;
+        frameListener = listener;
+        return true;
+    }
+
+    void stop() {
+        if (frameListener != null) {
+            window.removeOnFrameMetricsAvailableListener(frameListener);
+            frameListener = null;
+        }
+        if (frameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            frameCallback = null;
+        }
+    }
+
+    private void onFrameMetrics(FrameMetrics frame) {
+        long duration = frame.getMetric(FrameMetrics.TOTAL_DURATION);
+        long frameStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+            ? frame.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP)
+            : System.nanoTime() - duration;
+        onFrame(frameStart, frameStart + duration, duration);
+    }
+
+    /**
+     * One frame: starts at frameStart and is on screen at frameEnd (System.nanoTime() base)
+     */
+    private synchronized void onFrame(long frameStart, long frameEnd, long duration) {
+        if (finished) {
+            return;
+        }
+        if (firstFrameNanos < 0) {
+            firstFrameNanos = frameEnd - metrics.getStartNanos();
+        }
+
+        long confirmedAt = metrics.getConfirmedAtNanos();
+        if (confirmedAt >= 0 && frameStart >= confirmedAt) {
+            styledFrameNanos = frameEnd - metrics.getStartNanos();
+            finish();
+            return;
+        }
+
+        framesBeforeStyled++;
+        if (duration > SLOW_FRAME_NANOS) {
+            slowFramesBeforeStyled++;
+        }
+        if (framesBeforeStyled >= MAX_FRAMES) {
+            android.util.Log.w(TAG, "[Frames] Styles not confirmed after " + MAX_FRAMES + " frames, stopping");
+            finish();
+        }
+    }
+
+    private void finish() {
+        finished = true;
+        android.util.Log.i(TAG, "[Frames] " + toJSON());
+        // Listener removal is not allowed from inside the callback
+        new Handler(Looper.getMainLooper()).post(this::stop);
+    }
+
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Single-line JSON summary; null fields were not reached (yet)
+     */
+    synchronized String toJSON() {
+        StringBuilder json = new StringBuilder(192);
+        json.append("{\"source\":\"").append(source).append('"');
+        json.append(",\"firstFrameMs\":").append(millis(firstFrameNanos));
+        json.append(",\"framesBeforeStyled\":").append(framesBeforeStyled);
+        json.append(",\"slowFramesBeforeStyled\":").append(slowFramesBeforeStyled);
+        json.append(",\"styledFirstFrameMs\":").append(millis(styledFrameNanos));
+        json.append(",\"confirmedMs\":").append(millis(metrics.getConfirmedAtNanos() >= 0
+            ? metrics.getConfirmedAtNanos() - metrics.getStartNanos() : -1));
+        json.append(",\"complete\":").append(finished);
+        json.append('}');
+        return json.toString();
+    }
+
+    private static String millis(long nanos) {
+        if (nanos < 0) {
+            return "null";
+        }
+        return String.format(Locale.US, "%.2f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams an HTML document and splices extra markup right after the opening
+ * <head> tag. The document is never buffered as a whole: bytes are passed
+ * through as they are read and the injection is emitted once the tag closes.
+ * If no <head> tag is found the markup is appended at the end of the document.
+ */
+class HeadInjectingInputStream extends FilterInputStream {
+
+    private static final byte[] HEAD_TAG = {'<', 'h', 'e', 'a', 'd'};
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] injection;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPos = 0;
+    private int bufferLen = 0;
+
+    // -1 while scanning, then the next injection byte to emit
+    private int injectionPos = -1;
+    private int matched = 0;
+    private boolean inHeadTag = false;
+    private boolean sourceDone = false;
+
+    HeadInjectingInputStream(InputStream source, byte[] injection) {
+        super(source);
+        this.injection = injection;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        // Drain injection bytes first
+        if (injectionPos >= 0 && injectionPos < injection.length) {
+            int n = Math.min(len, injection.length - injectionPos);
+            System.arraycopy(injection, injectionPos, b, off, n);
+            injectionPos += n;
+            return n;
+        }
+
+        if (bufferPos >= bufferLen) {
+            if (sourceDone) {
+                return -1;
+            }
+            bufferLen = in.read(buffer, 0, buffer.length);
+            bufferPos = 0;
+            if (bufferLen == -1) {
+                bufferLen = 0;
+                sourceDone = true;
+                if (injectionPos < 0) {
+                    // No <head> found, append at end of document
+                    injectionPos = 0;
+                    return read(b, off, len);
+                }
+                return -1;
+            }
+        }
+
+        int end = bufferPos + Math.min(len, bufferLen - bufferPos);
+        int count = end - bufferPos;
+        if (injectionPos < 0) {
+            for (int i = bufferPos; i < end; i++) {
+                if (scan(buffer[i])) {
+                    // Stop right after the closing '>' of <head ...>
+                    injectionPos = 0;
+                    count = i - bufferPos + 1;
+                    break;
+                }
+            }
+        }
+
+        System.arraycopy(buffer, bufferPos, b, off, count);
+        bufferPos += count;
+        return count;
+    }
+
+    /**
+     * Advance the <head> matcher by one byte.
+     * Returns true when the byte closes the opening head tag.
+     */
+    private boolean scan(byte c) {
+        if (inHeadTag) {
+            return c == '>';
+        }
+
+        if (matched == HEAD_TAG.length) {
+            matched = (c == '<') ? 1 : 0;
+            if (c == '>') {
+                return true;
+            }
+            // Attributes follow, but "<header" must not match
+            inHeadTag = c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '/';
+            return false;
+        }
+
+        int lower = (c >= 'A' && c <= 'Z') ? c + 32 : c;
+        if (lower == HEAD_TAG[matched]) {
+            matched++;
+        } else {
+            matched = (c == '<') ? 1 : 0;
+        }
+        return false;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (injectionPos >= 0 && injectionPos < injection.length) {
+            return injection.length - injectionPos;
+        }
+        return (bufferLen - bufferPos) + in.available();
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] scratch = new byte[(int) Math.min(n, BUFFER_SIZE)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(scratch, 0, (int) Math.min(n - skipped, scratch.length));
+            if (r == -1) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,666 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Android-free core of CSSInjector: asset reading, encoding and script building.
+ * Only plain Java types are used so the hot path can run on any JVM.
+ */
+final class InjectionCore {
+
+    private static final char[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // Marker for control characters, written as a four-digit unicode escape
+    private static final String CONTROL_ESCAPE = "\\u00";
+
+    // RFC 3986 reserved characters, kept as they are when normalizing URLs
+    private static final String RESERVED = ":/?#[]@!$&'()*+,;=";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private InjectionCore() {
+    }
+
+    /**
+     * Read a stream in one pass into a buffer sized from the hint,
+     * growing only if the stream is longer than announced
+     */
+    static byte[] readFully(InputStream is, int sizeHint) throws IOException {
+        byte[] buffer = new byte[sizeHint > 0 ? sizeHint : 8192];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                // Buffer full: only grow if the stream really has more
+                int next = is.read();
+                if (next == -1) {
+                    break;
+                }
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                buffer[length++] = (byte) next;
+            }
+            int n = is.read(buffer, length, buffer.length - length);
+            if (n == -1) {
+                break;
+            }
+            length += n;
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Standard base64 without line wrapping (same output as Base64.NO_WRAP)
+     */
+    static String base64(byte[] data) {
+        return appendBase64(new StringBuilder(base64Length(data.length)), data).toString();
+    }
+
+    static int base64Length(int byteCount) {
+        return ((byteCount + 2) / 3) * 4;
+    }
+
+    /**
+     * Write base64 straight into an existing builder, no intermediate String
+     */
+    static StringBuilder appendBase64(StringBuilder out, byte[] data) {
+        int i = 0;
+        int full = data.length - data.length % 3;
+        for (; i < full; i += 3) {
+            int n = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            out.append(BASE64_ALPHABET[n >>> 18]);
+            out.append(BASE64_ALPHABET[(n >>> 12) & 0x3F]);
+            out.append(BASE64_ALPHABET[(n >>> 6) & 0x3F]);
+            out.append(BASE64_ALPHABET[n & 0x3F]);
+        }
+        int remaining = data.length - full;
+        if (remaining > 0) {
+            int n = (data[i] & 0xFF) << 16 | (remaining == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+            out.append(BASE64_ALPHABET[n >>> 18]);
+            out.append(BASE64_ALPHABET[(n >>> 12) & 0x3F]);
+            out.append(remaining == 2 ? BASE64_ALPHABET[(n >>> 6) & 0x3F] : '=');
+            out.append('=');
+        }
+        return out;
+    }
+
+    /**
+     * Append value as a quoted JavaScript string literal in a single pass.
+     * Safe in every context the plugin emits: '...' and "..." literals,
+     * javascript: URLs, evaluateJavascript and inline <script> blocks.
+     * Escapes backslash, both quote kinds, all C0 control characters,
+     * DEL, U+2028/U+2029 (line terminators in pre-ES2019 engines)
+     * and the '<' of "</" and "<!" so "</script>" or "<!--" can't break out.
+     */
+    static StringBuilder appendJsString(StringBuilder out, CharSequence value, char quote) {
+        out.append(quote);
+        int length = value.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape;
+            switch (c) {
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '\'':
+                    escape = "\\'";
+                    break;
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                case '\b':
+                    escape = "\\b";
+                    break;
+                case '\f':
+                    escape = "\\f";
+                    break;
+                case '\u2028':
+                    escape = "\\u2028";
+                    break;
+                case '\u2029':
+                    escape = "\\u2029";
+                    break;
+                case '<':
+                    char next = i + 1 < length ? value.charAt(i + 1) : 0;
+                    escape = (next == '/' || next == '!') ? "\\u003C" : null;
+                    break;
+                default:
+                    escape = (c < 0x20 || c == 0x7F) ? CONTROL_ESCAPE : null;
+                    break;
+            }
+            if (escape != null) {
+                // Copy the unescaped run in one call, then the escape
+                out.append(value, runStart, i);
+                if (escape == CONTROL_ESCAPE) {
+                    appendUnicodeEscape(out, c);
+                } else {
+                    out.append(escape);
+                }
+                runStart = i + 1;
+            }
+        }
+        out.append(value, runStart, length);
+        return out.append(quote);
+    }
+
+    /**
+     * Builder capacity for an escaped literal: content plus headroom for escapes
+     */
+    static int escapedCapacity(int length) {
+        return length + (length >> 4) + 2;
+    }
+
+    private static void appendUnicodeEscape(StringBuilder out, char c) {
+        out.append("\\u00");
+        out.append(Character.forDigit((c >> 4) & 0xF, 16));
+        out.append(Character.forDigit(c & 0xF, 16));
+    }
+
+    /**
+     * Non-enumerable config.get(keys): resolves with the requested keys,
+     * fetching any the page was not given (CONFIG_INJECTION=lazy) through
+     * the getConfig action and keeping them on the config object
+     */
+    private static final String CONFIG_ACCESSOR =
+        "if(!('get' in config))Object.defineProperty(config,'get',{value:function(keys){" +
+        "var list=[].concat(keys);" +
+        "function has(k){return Object.prototype.hasOwnProperty.call(config,k);}" +
+        "function pick(){var out={};list.forEach(function(k){if(has(k))out[k]=config[k];});return out;}" +
+        "var missing=list.filter(function(k){return !has(k);});" +
+        "if(!missing.length)return Promise.resolve(pick());" +
+        "return new Promise(function(resolve,reject){" +
+        "function fetch(){cordova.exec(function(values){for(var k in values)config[k]=values[k];resolve(pick());},reject,'CSSInjector','getConfig',[missing]);}" +
+        "if(window.cordova&&cordova.exec)fetch();else document.addEventListener('deviceready',fetch,false);" +
+        "});" +
+        "}});";
+
+    /**
+     * Runs the wrapped function after first paint: a timeout queued from
+     * requestAnimationFrame fires once that frame is on screen. The fallback
+     * timeout covers documents that never get a frame (hidden WebView).
+     */
+    private static final String AFTER_FIRST_PAINT_START =
+        "(function(run) {" +
+        "  var done = false;" +
+        "  function once() { if (!done) { done = true; run(); } }" +
+        "  if (typeof requestAnimationFrame === 'function') {" +
+        "    requestAnimationFrame(function() { setTimeout(once, 0); });" +
+        "  }" +
+        "  setTimeout(once, 1000);" +
+        "})(function() {";
+    private static final String AFTER_FIRST_PAINT_END = "});";
+
+    /**
+     * <script> for HTML <head> that sets window.CORDOVA_BUILD_CONFIG immediately
+     */
+    static String buildConfigInlineScript(String configJSON) {
+        return "<script type='text/javascript'>" +
+            "(function(){" +
+            "try{" +
+            "var config=" + configJSON + ";" +
+            CONFIG_ACCESSOR +
+            "window.CORDOVA_BUILD_CONFIG=config;" +
+            "window.AppConfig=config;" +
+            "console.log('[Inline-Config] Injected:',config);" +
+            "}catch(e){" +
+            "console.error('[Inline-Config] Failed:',e);" +
+            "}" +
+            "})();" +
+            "</script>";
+    }
+
+    /**
+     * Script that sets window.CORDOVA_BUILD_CONFIG and fires cordova-config-ready
+     */
+    static String buildConfigInjectionScript(String configJSON) {
+        return appendConfigInjectionScript(new StringBuilder(escapedCapacity(configJSON.length()) + 640 + CONFIG_ACCESSOR.length()),
+            configJSON).toString();
+    }
+
+    static StringBuilder appendConfigInjectionScript(StringBuilder js, String configJSON) {
+        js.append("(function() {" +
+            "  try {" +
+            "    if (typeof window === 'undefined') return;" +
+            "    var config = JSON.parse(");
+        appendJsString(js, configJSON, '"');
+        return js.append(");" +
+            CONFIG_ACCESSOR +
+            "    window.CORDOVA_BUILD_CONFIG = config;" +
+            "    window.AppConfig = config;" +
+            "    console.log('[Native-JS] Build config injected:', config);" +
+            "    " +
+            "    if (typeof CustomEvent !== 'undefined') {" +
+            "      window.dispatchEvent(new CustomEvent('cordova-config-ready', { detail: config }));" +
+            "    }" +
+            "  } catch(e) {" +
+            "    console.error('[Native-JS] Config injection failed:', e);" +
+            "  }" +
+            "})();");
+    }
+
+    static String buildBackgroundCSS(String bgColor) {
+        return "html, body, #root, #app, .app-container, .screen, .page-wrapper { " +
+            "background-color: " + bgColor + " !important; " +
+            "background: " + bgColor + " !important; " +
+            "margin: 0; padding: 0; " +
+            "}";
+    }
+
+    static String buildBackgroundInjectionScript(String bgColor) {
+        return appendBackgroundInjectionScript(new StringBuilder(1024), bgColor).toString();
+    }
+
+    static StringBuilder appendBackgroundInjectionScript(StringBuilder js, String bgColor) {
+        js.append("(function() {" +
+            "  try {" +
+            "    if (typeof document === 'undefined') return;" +
+            "    var color = ");
+        appendJsString(js, bgColor, '\'');
+        js.append(";" +
+            "    if (document.documentElement) {" +
+            "      document.documentElement.style.backgroundColor = color;" +
+            "    }" +
+            "    if (document.body) {" +
+            "      document.body.style.backgroundColor = color;" +
+            "    }" +
+            "    " +
+            "    var target = document.head || document.getElementsByTagName('head')[0];" +
+            "    if (target) {" +
+            "      var s = document.getElementById('cordova-bg');" +
+            "      if (!s) {" +
+            "        s = document.createElement('style');" +
+            "        s.id = 'cordova-bg';" +
+            "        s.textContent = ");
+        appendJsString(js, buildBackgroundCSS(bgColor), '\'');
+        return js.append(";" +
+            "        target.insertBefore(s, target.firstChild);" +
+            "        console.log('[Native-BG] CSS injected: ' + color);" +
+            "      }" +
+            "    }" +
+            "  } catch(e) { console.error('[Native-BG] Failed:', e); }" +
+            "})();");
+    }
+
+    static String buildCSSInjectionScript(byte[] cssBytes) {
+        try {
+            StringBuilder js = new StringBuilder(base64Length(cssBytes.length) + 1024);
+            return appendCSSInjectionScript(js, cssBytes).toString();
+        } catch (Exception e) {
+            return buildFallbackInjectionScript(new String(cssBytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Base64 path: the payload only contains base64 characters, so it is
+     * encoded straight into the script builder without any escaping
+     */
+    static StringBuilder appendCSSInjectionScript(StringBuilder js, byte[] cssBytes) {
+        js.append("(function() {" +
+               "  function inject() {" +
+               "    try {" +
+               "      if (typeof document === 'undefined') return;" +
+               "      var target = document.head || document.getElementsByTagName('head')[0] || document.documentElement;" +
+               "      if (!target) {" +
+               "        setTimeout(inject, 100);" +
+               "        return;" +
+               "      }" +
+               "      if (!document.getElementById('cdn-styles')) {" +
+               "        var b64 = '");
+        appendBase64(js, cssBytes);
+        return js.append("';" +
+               "        var css = decodeURIComponent(escape(atob(b64)));" +
+               "        var s = document.createElement('style');" +
+               "        s.id = 'cdn-styles';" +
+               "        s.textContent = css;" +
+               "        target.appendChild(s);" +
+               "        console.log('[Native-CSS] Loaded (' + css.length + ' bytes)');" +
+               "      }" +
+               "    } catch(e) { console.error('[Native-CSS] Failed:', e); }" +
+               "  }" +
+               "  if (document.readyState === 'loading') {" +
+               "    document.addEventListener('DOMContentLoaded', inject);" +
+               "  } else {" +
+               "    inject();" +
+               "  }" +
+               "})();");
+    }
+
+    /**
+     * Script that adds a <link> to the virtual stylesheet; the WebView
+     * fetches and parses the CSS natively instead of decoding it in JS
+     */
+    static String buildCSSLinkScript(String href) {
+        return appendCSSLinkScript(new StringBuilder(1024), href).toString();
+    }
+
+    static StringBuilder appendCSSLinkScript(StringBuilder js, String href) {
+        js.append("(function() {" +
+               "  function inject() {" +
+               "    try {" +
+               "      if (typeof document === 'undefined') return;" +
+               "      var target = document.head || document.getElementsByTagName('head')[0] || document.documentElement;" +
+               "      if (!target) {" +
+               "        setTimeout(inject, 100);" +
+               "        return;" +
+               "      }" +
+               "      if (!document.getElementById('cdn-styles')) {" +
+               "        var l = document.createElement('link');" +
+               "        l.id = 'cdn-styles';" +
+               "        l.rel = 'stylesheet';" +
+               "        l.href = ");
+        appendJsString(js, href, '\'');
+        return js.append(";" +
+               "        target.appendChild(l);" +
+               "        console.log('[Native-CSS] Linked ' + l.href);" +
+               "      }" +
+               "    } catch(e) { console.error('[Native-CSS] Failed:', e); }" +
+               "  }" +
+               "  inject();" +
+               "})();");
+    }
+
+    /**
+     * Critical part of a split stylesheet as <style id='cdn-styles-critical'>,
+     * added at once; the full stylesheet follows after first paint
+     */
+    static StringBuilder appendCriticalCSSScript(StringBuilder js, byte[] criticalBytes) {
+        js.append("(function() {" +
+               "  try {" +
+               "    if (typeof document === 'undefined' || document.getElementById('cdn-styles-critical')) return;" +
+               "    var s = document.createElement('style');" +
+               "    s.id = 'cdn-styles-critical';" +
+               "    s.textContent = ");
+        appendJsString(js, new String(criticalBytes, StandardCharsets.UTF_8), '\'');
+        return js.append(";" +
+               "    (document.head || document.documentElement).appendChild(s);" +
+               "  } catch(e) { console.error('[Native-CSS] Critical part failed:', e); }" +
+               "})();");
+    }
+
+    /**
+     * Critical part as a <style> tag for HTML <head>
+     */
+    static String buildCriticalStyleTag(byte[] criticalBytes) {
+        // "</style" can only occur inside a CSS string, where "<\/" means the same
+        String css = new String(criticalBytes, StandardCharsets.UTF_8).replaceAll("(?i)</(style)", "<\\\\/$1");
+        return "<style id='cdn-styles-critical'>" + css + "</style>";
+    }
+
+    /**
+     * <script> for HTML <head> that links the virtual stylesheet after first paint,
+     * so it no longer blocks rendering
+     */
+    static String buildDeferredCSSLinkTag(String href) {
+        StringBuilder js = new StringBuilder(1536);
+        js.append("<script type='text/javascript'>").append(AFTER_FIRST_PAINT_START);
+        appendCSSLinkScript(js, href);
+        return js.append(AFTER_FIRST_PAINT_END).append("</script>").toString();
+    }
+
+    /**
+     * Plain-literal path, used when base64 is unavailable
+     */
+    static String buildFallbackInjectionScript(String cssContent) {
+        StringBuilder js = new StringBuilder(escapedCapacity(cssContent.length()) + 1024);
+        js.append("(function() {" +
+               "  function inject() {" +
+               "    try {" +
+               "      if (typeof document === 'undefined') return;" +
+               "      var target = document.head || document.getElementsByTagName('head')[0] || document.documentElement;" +
+               "      if (!target) {" +
+               "        setTimeout(inject, 100);" +
+               "        return;" +
+               "      }" +
+               "      if (!document.getElementById('cdn-styles')) {" +
+               "        var s = document.createElement('style');" +
+               "        s.id = 'cdn-styles';" +
+               "        s.textContent = ");
+        appendJsString(js, cssContent, '\'');
+        return js.append(";" +
+               "        target.appendChild(s);" +
+               "        console.log('[Native-CSS] Loaded');" +
+               "      }" +
+               "    } catch(e) { console.error('[Native-CSS] Failed:', e); }" +
+               "  }" +
+               "  if (document.readyState === 'loading') {" +
+               "    document.addEventListener('DOMContentLoaded', inject);" +
+               "  } else {" +
+               "    inject();" +
+               "  }" +
+               "})();").toString();
+    }
+
+    /**
+     * Script registered to run at document start, before any page script.
+     * head/body don't exist yet, so styles go to <head> if present and to
+     * <html> otherwise, and nothing waits for DOMContentLoaded.
+     * Subframes are skipped. Null arguments skip that part.
+     * With criticalContent, only that part is applied at document start and
+     * the full stylesheet is decoded and added after first paint.
+     */
+    static String buildDocumentStartScript(String configJSON, String bgColor, byte[] cssContent, byte[] criticalContent) {
+        boolean hasBackground = bgColor != null && !bgColor.isEmpty();
+        byte[] cssBytes = cssContent != null && cssContent.length > 0 ? cssContent : null;
+        byte[] criticalBytes = cssBytes != null && criticalContent != null && criticalContent.length > 0 ? criticalContent : null;
+        int capacity = 2048 + (configJSON != null ? escapedCapacity(configJSON.length()) : 0) +
+            (cssBytes != null ? base64Length(cssBytes.length) : 0) +
+            (criticalBytes != null ? escapedCapacity(criticalBytes.length) : 0);
+
+        StringBuilder js = new StringBuilder(capacity);
+        js.append("(function() {" +
+            "  if (typeof window === 'undefined' || window.top !== window) return;");
+        if (configJSON != null) {
+            appendConfigInjectionScript(js, configJSON);
+        }
+        js.append("  var d = document;" +
+            "  function addStyle(id, css) {" +
+            "    if (d.getElementById(id)) return;" +
+            "    var s = d.createElement('style');" +
+            "    s.id = id;" +
+            "    s.textContent = css;" +
+            "    (d.head || d.documentElement).appendChild(s);" +
+            "  }" +
+            "  try {");
+        if (hasBackground) {
+            js.append("    var color = ");
+            appendJsString(js, bgColor, '\'');
+            js.append(";" +
+                "    if (d.documentElement) d.documentElement.style.backgroundColor = color;" +
+                "    addStyle('cordova-bg', ");
+            appendJsString(js, buildBackgroundCSS(bgColor), '\'');
+            js.append(");");
+        }
+        if (criticalBytes != null) {
+            js.append("    addStyle('cdn-styles-critical', ");
+            appendJsString(js, new String(criticalBytes, StandardCharsets.UTF_8), '\'');
+            js.append(");");
+            js.append(AFTER_FIRST_PAINT_START).append("    try {");
+        }
+        if (cssBytes != null) {
+            js.append("    addStyle('cdn-styles', decodeURIComponent(escape(atob('");
+            appendBase64(js, cssBytes);
+            js.append("'))));");
+        }
+        if (criticalBytes != null) {
+            js.append("    } catch(e) { console.error('[DocStart] Deferred CSS failed:', e); }").append(AFTER_FIRST_PAINT_END);
+        }
+        return js.append("  } catch(e) { console.error('[DocStart] Failed:', e); }" +
+            "})();").toString();
+    }
+
+    /**
+     * Expression that evaluates to which injected parts are present;
+     * parts that were not injected count as present. cssId is the style
+     * element that must exist, null if no CSS was injected.
+     * href tells which document answered, see isAppDocument; state is for logs.
+     */
+    static String buildPresenceCheck(boolean hasConfig, boolean hasBackground, String cssId) {
+        return "(function() {" +
+            "  var d = typeof document !== 'undefined' ? document : null;" +
+            "  return {" +
+            "    href: String(location.href)," +
+            "    state: d ? d.readyState : ''," +
+            "    config: " + (hasConfig ? "!!window.CORDOVA_BUILD_CONFIG" : "true") + "," +
+            "    bg: " + (hasBackground ? "!!(d && d.getElementById('cordova-bg'))" : "true") + "," +
+            "    css: " + (cssId != null ? "!!(d && d.getElementById('" + cssId + "'))" : "true") +
+            "  };" +
+            "})();";
+    }
+
+    /**
+     * Whether a presence check answer came from the app page rather than the
+     * initial empty document the WebView shows before index.html commits.
+     * That document is about:blank, carries none of the parts and is replaced,
+     * so its answer says nothing about the page that follows. The app page
+     * counts in any readyState: lifecycle injection runs at commit, while it
+     * is usually still "loading", and the parts it added stay.
+     */
+    static boolean isAppDocument(String href, String appOrigin) {
+        if (href == null) {
+            return false;
+        }
+        return href.startsWith(appOrigin + "/") || href.startsWith("file:///android_asset/www/");
+    }
+
+    /**
+     * Config + background + CSS scripts followed by the presence check.
+     * Null arguments skip that part; a non-null cssHref links the virtual
+     * stylesheet instead of inlining the UTF-8 cssContent.
+     * With criticalContent, that part is added at once and confirmed; the
+     * full stylesheet is added after first paint.
+     */
+    static String buildCombinedInjectionScript(String configJSON, String bgColor, byte[] cssContent, String cssHref,
+                                               byte[] criticalContent) {
+        boolean hasConfig = configJSON != null;
+        boolean hasBackground = bgColor != null && !bgColor.isEmpty();
+        boolean hasCSS = cssContent != null && cssContent.length > 0;
+        boolean hasCritical = hasCSS && criticalContent != null && criticalContent.length > 0;
+
+        // Size once up front so the combined script is built without regrowing
+        byte[] cssBytes = hasCSS && cssHref == null ? cssContent : null;
+        int capacity = 4096;
+        if (hasConfig) {
+            capacity += escapedCapacity(configJSON.length());
+        }
+        if (cssBytes != null) {
+            capacity += base64Length(cssBytes.length);
+        }
+        if (hasCritical) {
+            capacity += escapedCapacity(criticalContent.length);
+        }
+
+        StringBuilder javascript = new StringBuilder(capacity);
+        if (hasConfig) {
+            appendConfigInjectionScript(javascript, configJSON);
+        }
+        if (hasBackground) {
+            appendBackgroundInjectionScript(javascript, bgColor);
+        }
+        if (hasCritical) {
+            appendCriticalCSSScript(javascript, criticalContent);
+            javascript.append(AFTER_FIRST_PAINT_START);
+        }
+        if (hasCSS) {
+            if (cssBytes != null) {
+                appendCSSInjectionScript(javascript, cssBytes);
+            } else {
+                appendCSSLinkScript(javascript, cssHref);
+            }
+        }
+        if (hasCritical) {
+            javascript.append(AFTER_FIRST_PAINT_END);
+        }
+        javascript.append(buildPresenceCheck(hasConfig, hasBackground,
+            hasCritical ? "cdn-styles-critical" : hasCSS ? "cdn-styles" : null));
+        return javascript.toString();
+    }
+
+    /**
+     * scheme://host[:port] of an http(s) URL, spelled as by normalizeUrl;
+     * null for null and for any other scheme (file://, custom schemes)
+     */
+    static String originOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        String normal = normalizeUrl(url);
+        if (!normal.startsWith("https://") && !normal.startsWith("http://")) {
+            return null;
+        }
+        return normal.substring(0, normal.indexOf('/', normal.indexOf("://") + 3));
+    }
+
+    /**
+     * One spelling per URL, for matching WebView requests against URLs resolved
+     * by Node (new URL().href) in the CDN asset manifest: no fragment, lower-case
+     * scheme and host, no default port, and RFC 3986 escaping - unreserved
+     * characters unescaped, everything outside unreserved/reserved escaped as
+     * UTF-8, hex digits upper case. Reserved characters keep their form.
+     */
+    static String normalizeUrl(String url) {
+        int fragment = url.indexOf('#');
+        String spec = fragment >= 0 ? url.substring(0, fragment) : url;
+        int schemeEnd = spec.indexOf("://");
+        if (schemeEnd <= 0) {
+            return spec;
+        }
+        int authorityEnd = schemeEnd + 3;
+        while (authorityEnd < spec.length() && "/?".indexOf(spec.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        String scheme = spec.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        String authority = spec.substring(schemeEnd + 3, authorityEnd).toLowerCase(Locale.ROOT);
+        if (("https".equals(scheme) && authority.endsWith(":443")) || ("http".equals(scheme) && authority.endsWith(":80"))) {
+            authority = authority.substring(0, authority.lastIndexOf(':'));
+        }
+
+        StringBuilder out = new StringBuilder(spec.length() + 16).append(scheme).append("://").append(authority);
+        String rest = spec.substring(authorityEnd);
+        if (rest.isEmpty() || rest.charAt(0) == '?') {
+            out.append('/');
+        }
+        byte[] bytes = rest.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            if (b == '%' && i + 2 < bytes.length && isHexDigit(bytes[i + 1]) && isHexDigit(bytes[i + 2])) {
+                int decoded = Character.digit(bytes[i + 1], 16) * 16 + Character.digit(bytes[i + 2], 16);
+                i += 2;
+                if (isUnreserved(decoded)) {
+                    out.append((char) decoded);
+                } else {
+                    appendPercentEncoded(out, decoded);
+                }
+            } else if (isUnreserved(b) || (b < 0x80 && RESERVED.indexOf(b) >= 0)) {
+                out.append((char) b);
+            } else {
+                appendPercentEncoded(out, b);
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isUnreserved(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+            || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isHexDigit(byte c) {
+        return Character.digit(c, 16) >= 0;
+    }
+
+    private static void appendPercentEncoded(StringBuilder out, int b) {
+        out.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+    }
+}
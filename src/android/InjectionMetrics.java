@@ -0,0 +1,118 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Monotonic startup timings for CSSInjector, measured from plugin creation.
+ * All durations use System.nanoTime() and are reported in milliseconds.
+ */
+final class InjectionMetrics {
+
+    private final long startNanos = System.nanoTime();
+
+    private long assetReadNanos = -1;
+    private int cssBytes = 0;
+    private int configBytes = 0;
+    private int largestPayloadChars = 0;
+    private int attempts = 0;
+    private final List<Long> attemptNanos = new ArrayList<>();
+    private long firstConfirmedNanos = -1;
+    private boolean reported = false;
+
+    synchronized void recordAssetRead(long nanos, int cssBytes, int configBytes) {
+        this.assetReadNanos = nanos;
+        this.cssBytes = cssBytes;
+        this.configBytes = configBytes;
+    }
+
+    synchronized void recordPayloadSize(int chars) {
+        largestPayloadChars = Math.max(largestPayloadChars, chars);
+    }
+
+    /**
+     * Count an injection attempt and return its start timestamp
+     */
+    synchronized long attemptStarted() {
+        attempts++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the round-trip of an attempt; the first confirmed one
+     * marks the time styles were first seen in the DOM
+     */
+    synchronized void attemptFinished(long startedAt, boolean confirmed) {
+        long now = System.nanoTime();
+        attemptNanos.add(now - startedAt);
+        if (confirmed) {
+            recordConfirmed(now);
+        }
+    }
+
+    synchronized void recordConfirmed(long now) {
+        if (firstConfirmedNanos < 0) {
+            firstConfirmedNanos = now - startNanos;
+        }
+    }
+
+    synchronized boolean isConfirmed() {
+        return firstConfirmedNanos >= 0;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * System.nanoTime() of the first confirmation, or -1 before it
+     */
+    synchronized long getConfirmedAtNanos() {
+        return firstConfirmedNanos >= 0 ? startNanos + firstConfirmedNanos : -1;
+    }
+
+    /**
+     * True only the first time, so the summary is logged once per launch
+     */
+    synchronized boolean markReported() {
+        if (reported) {
+            return false;
+        }
+        reported = true;
+        return true;
+    }
+
+    /**
+     * Single-line JSON summary
+     */
+    synchronized String toJSON(String mode, InjectionPayloadCache cache) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"mode\":\"").append(mode).append('"');
+        json.append(",\"assetReadMs\":").append(millis(assetReadNanos));
+        json.append(",\"cssBytes\":").append(cssBytes);
+        json.append(",\"configBytes\":").append(configBytes);
+        json.append(",\"payloadBuildMs\":").append(millis(cache.getBuildNanos()));
+        json.append(",\"payloadBuilds\":").append(cache.getMisses());
+        json.append(",\"payloadCacheHits\":").append(cache.getHits());
+        json.append(",\"largestPayloadChars\":").append(largestPayloadChars);
+        json.append(",\"attempts\":").append(attempts);
+        json.append(",\"attemptMs\":[");
+        for (int i = 0; i < attemptNanos.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(millis(attemptNanos.get(i)));
+        }
+        json.append("],\"firstConfirmedMs\":").append(millis(firstConfirmedNanos));
+        json.append('}');
+        return json.toString();
+    }
+
+    private static String millis(long nanos) {
+        if (nanos < 0) {
+            return "null";
+        }
+        return String.format(Locale.US, "%.2f", nanos / 1_000_000.0);
+    }
+}
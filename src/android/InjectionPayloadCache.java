@@ -0,0 +1,98 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of built injection scripts, one entry per payload kind.
+ * A script is built once per content hash and the same String is returned
+ * on every later call; a new hash replaces the previous entry.
+ */
+final class InjectionPayloadCache {
+
+    interface Builder {
+        String build();
+    }
+
+    private static final class Entry {
+        final String hash;
+        final String script;
+
+        Entry(String hash, String script) {
+            this.hash = hash;
+            this.script = script;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int hits = 0;
+    private int misses = 0;
+    private long buildNanos = 0;
+
+    /**
+     * Return the cached script for kind/hash, building it on a miss.
+     * Returns null (and caches nothing) if the builder fails.
+     */
+    synchronized String get(String kind, String hash, Builder builder) {
+        Entry entry = entries.get(kind);
+        if (entry != null && entry.hash.equals(hash)) {
+            hits++;
+            return entry.script;
+        }
+
+        misses++;
+        long start = System.nanoTime();
+        String script = builder.build();
+        buildNanos += System.nanoTime() - start;
+        if (script != null) {
+            entries.put(kind, new Entry(hash, script));
+        }
+        return script;
+    }
+
+    /**
+     * Drop all built scripts; they are rebuilt on the next get()
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int getHits() {
+        return hits;
+    }
+
+    synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Total time spent in builders
+     */
+    synchronized long getBuildNanos() {
+        return buildNanos;
+    }
+
+    synchronized String stats() {
+        return hits + " hits, " + misses + " misses";
+    }
+
+    /**
+     * Short hex SHA-256 of the content, used as cache key and URL version
+     */
+    static String contentHash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(Arrays.hashCode(content));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.webkit.WebResourceResponse;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bundled CDN assets are found whichever way the URL is spelled: manifest keys
+ * come from Node's URL resolution, requests from the WebView's.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class CDNAssetManifestTest {
+
+    private FakeCordova fake;
+
+    @After
+    public void shutdown() {
+        if (fake != null) {
+            fake.shutdown();
+        }
+    }
+
+    @Test
+    public void normalFormIgnoresSpellingDifferences() {
+        assertEquals("https://cdn.example.com/css/icons.svg",
+            InjectionCore.normalizeUrl("https://cdn.example.com/css/icons.svg#home"));
+        assertEquals("https://cdn.example.com/a/~user/x.png?q=a%20b",
+            InjectionCore.normalizeUrl("HTTPS://CDN.Example.com:443/a/%7euser/x.png?q=a b"));
+        assertEquals(InjectionCore.normalizeUrl("https://cdn.example.com/img/caf%c3%a9.png"),
+            InjectionCore.normalizeUrl("https://cdn.example.com/img/café.png"));
+        assertEquals(InjectionCore.normalizeUrl("https://cdn.example.com/a%7Cb.png"),
+            InjectionCore.normalizeUrl("https://cdn.example.com/a|b.png"));
+        // An escaped reserved character is a different URL
+        assertEquals("https://cdn.example.com/x%2Fy.png", InjectionCore.normalizeUrl("https://cdn.example.com/x%2fy.png"));
+    }
+
+    @Test
+    public void bundledAssetsAreServedForWebViewSpellings() {
+        Map<String, byte[]> assets = new HashMap<>();
+        // As downloadCDNResources.js writes them: new URL(ref, cssUrl).href without the fragment
+        assets.put("www/assets/cdn/manifest.json", utf8("{" +
+            "\"https://cdn.example.com/css/fonts/my%20font.woff2\":{\"file\":\"aaaa.woff2\",\"type\":\"font/woff2\"}," +
+            "\"https://cdn.example.com/img/caf%C3%A9.png\":{\"file\":\"bbbb.png\",\"type\":\"image/png\"}," +
+            "\"https://cdn.example.com/css/icons.svg\":{\"file\":\"cccc.svg\",\"type\":\"image/svg+xml\"}}"));
+        assets.put("www/assets/cdn/aaaa.woff2", utf8("font"));
+        assets.put("www/assets/cdn/bbbb.png", utf8("png"));
+        assets.put("www/assets/cdn/cccc.svg", utf8("svg"));
+        Map<String, String> preferences = new HashMap<>();
+        preferences.put("CDN_RESOURCE", "https://cdn.example.com/css/app.css");
+        fake = new FakeCordova(preferences);
+        fake.start(assets);
+
+        assertServed("font/woff2", fake.request("https://cdn.example.com/css/fonts/my%20font.woff2", false));
+        assertServed("image/png", fake.request("https://cdn.example.com/img/caf%c3%a9.png", false));
+        assertServed("image/svg+xml", fake.request("https://cdn.example.com/css/icons.svg#home", false));
+        assertServed("image/svg+xml", fake.request("https://CDN.example.com:443/css/icons.svg", false));
+        assertNull(fake.request("https://cdn.example.com/css/other.svg", false));
+    }
+
+    private static void assertServed(String type, WebResourceResponse response) {
+        assertNotNull(response);
+        assertEquals(type, response.getMimeType());
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
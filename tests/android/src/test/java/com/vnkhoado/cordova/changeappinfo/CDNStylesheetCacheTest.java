@@ -0,0 +1,205 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CDN_RUNTIME_REFRESH against a stand-in CDN on localhost: what revalidate()
+ * stores and returns for a new stylesheet, an unchanged one, a CDN that
+ * stops answering and a response that is not a stylesheet.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class CDNStylesheetCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final int READ_TIMEOUT_MS = 300;
+    private static final String INDEX_HTML = "<html><body><div class=\"splash\"></div></body></html>";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private volatile int status = 200;
+    private volatile String body = "";
+    private volatile long delayMs = 0;
+    private final List<String> ifNoneMatch = Collections.synchronizedList(new ArrayList<String>());
+    private int markupReads = 0;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/styles/", this::respond);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+        ifNoneMatch.add(condition);
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ETAG.equals(condition)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        exchange.sendResponseHeaders(status, content.length == 0 ? -1 : content.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(content);
+        out.close();
+    }
+
+    private String stylesheetUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/styles/app.css";
+    }
+
+    private CDNStylesheetCache cache() {
+        return new CDNStylesheetCache(folder.getRoot(), stylesheetUrl(), 1000, READ_TIMEOUT_MS);
+    }
+
+    private CDNStylesheetProcessor processor(int splitThresholdBytes) {
+        return new CDNStylesheetProcessor(stylesheetUrl(), () -> {
+            markupReads++;
+            return INDEX_HTML;
+        }, Arrays.asList(".toolbar"), splitThresholdBytes, 20 * 1024);
+    }
+
+    @Test
+    public void newStylesheetIsStoredWithResolvedUrls() {
+        body = "@font-face{font-family:a;src:url(fonts/a.woff2)}" +
+            ".logo{background:url('../img/logo.png')}" +
+            ".icon{background:url(data:image/png;base64,AAAA)}";
+
+        CDNStylesheetProcessor.Result fresh = cache().revalidate(processor(0));
+
+        assertNotNull(fresh);
+        String css = utf8(fresh.css);
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        assertTrue(css, css.contains("url(\"" + base + "/styles/fonts/a.woff2\")"));
+        assertTrue(css, css.contains("url(\"" + base + "/img/logo.png\")"));
+        assertTrue(css, css.contains("url(data:image/png;base64,AAAA)"));
+        assertNull(fresh.critical);
+        assertEquals(0, markupReads);
+
+        CDNStylesheetProcessor.Result cached = cache().readCached();
+        assertNotNull(cached);
+        assertArrayEquals(fresh.css, cached.css);
+        assertNull(cached.critical);
+    }
+
+    @Test
+    public void largeStylesheetGetsItsCriticalPartRebuilt() {
+        StringBuilder css = new StringBuilder("body{margin:0}.splash{background:url(splash.png)}.toolbar{height:56px}");
+        for (int rule = 0; css.length() < 4096; rule++) {
+            css.append(".later").append(rule).append("{color:#123456}");
+        }
+        body = css.toString();
+
+        CDNStylesheetProcessor.Result fresh = cache().revalidate(processor(1024));
+
+        assertNotNull(fresh);
+        assertNotNull(fresh.critical);
+        String critical = utf8(fresh.critical);
+        assertTrue(critical, critical.startsWith("body{margin:0}.splash{background:url(\"http://127.0.0.1:"));
+        assertTrue(critical, critical.contains(".toolbar{height:56px}"));
+        assertTrue(critical, !critical.contains(".later"));
+        assertEquals(1, markupReads);
+
+        CDNStylesheetProcessor.Result cached = cache().readCached();
+        assertNotNull(cached);
+        assertArrayEquals(fresh.critical, cached.critical);
+    }
+
+    @Test
+    public void notModifiedKeepsTheStoredCopy() {
+        body = ".a{color:red}";
+        CDNStylesheetProcessor.Result first = cache().revalidate(processor(0));
+        assertNotNull(first);
+
+        body = ".a{color:blue}";
+        assertNull(cache().revalidate(processor(0)));
+
+        assertEquals(Arrays.asList(null, ETAG), ifNoneMatch);
+        assertArrayEquals(first.css, cache().readCached().css);
+    }
+
+    @Test
+    public void timeoutKeepsTheStoredCopy() {
+        body = ".a{color:red}";
+        CDNStylesheetProcessor.Result first = cache().revalidate(processor(0));
+        assertNotNull(first);
+
+        // Another URL, so only the timeout can make revalidate() return null
+        delayMs = READ_TIMEOUT_MS * 3;
+        body = ".a{color:blue}";
+        long start = System.nanoTime();
+        CDNStylesheetCache cache = new CDNStylesheetCache(folder.getRoot(), stylesheetUrl() + "?fresh", 1000, READ_TIMEOUT_MS);
+        assertNull(cache.revalidate(processor(0)));
+
+        assertTrue((System.nanoTime() - start) / 1_000_000 < delayMs);
+        assertArrayEquals(first.css, cache().readCached().css);
+    }
+
+    @Test
+    public void badBodiesAreRejected() {
+        body = ".a{color:red}";
+        CDNStylesheetProcessor.Result first = cache().revalidate(processor(0));
+        assertNotNull(first);
+
+        for (String bad : new String[] {
+            "<!DOCTYPE html><html><body>Gateway error</body></html>",
+            ".a{color:blue}.b{margin:0",
+            ""
+        }) {
+            // A different URL so the CDN answers 200 instead of 304
+            CDNStylesheetCache other = new CDNStylesheetCache(folder.getRoot(), stylesheetUrl() + "?bad", 1000, READ_TIMEOUT_MS);
+            body = bad;
+            assertNull(bad, other.revalidate(processor(0)));
+            assertNull(bad, other.readCached());
+        }
+
+        status = 500;
+        body = ".a{color:blue}";
+        assertNull(new CDNStylesheetCache(folder.getRoot(), stylesheetUrl() + "?error", 1000, READ_TIMEOUT_MS)
+            .revalidate(processor(0)));
+        assertArrayEquals(first.css, cache().readCached().css);
+    }
+
+    private static String utf8(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,261 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Looper;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebViewClient;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaInterfaceImpl;
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.CordovaWebViewImpl;
+import org.apache.cordova.PluginEntry;
+import org.apache.cordova.engine.SystemWebViewEngine;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cordova around a RecordingWebView: an activity, a CordovaInterface with its own
+ * thread pool and a CordovaWebView, all in one Robolectric main looper.
+ * Main-thread time is the thread CPU time of each callback and each looper
+ * task, so neither the harness stepping the clock nor a busy CI machine counts.
+ */
+final class FakeCordova {
+
+    private static final int SETTLE_ROUNDS = 40;
+    private static final Duration SETTLE_STEP = Duration.ofMillis(100);
+
+    final AppCompatActivity activity;
+    final RecordingWebView view;
+    final CordovaWebViewImpl webView;
+    final CordovaPreferences preferences = new CordovaPreferences();
+    private final ExecutorService threadPool = Executors.newSingleThreadExecutor();
+    private final CordovaInterfaceImpl cordova;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long mainThreadNanos = 0;
+
+    FakeCordova(Map<String, String> preferenceValues) {
+        activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+        cordova = new CordovaInterfaceImpl(activity, threadPool);
+        for (Map.Entry<String, String> preference : preferenceValues.entrySet()) {
+            preferences.set(preference.getKey(), preference.getValue());
+        }
+        view = new RecordingWebView(activity);
+        webView = new CordovaWebViewImpl(new SystemWebViewEngine(view));
+        webView.init(cordova, new ArrayList<PluginEntry>(), preferences);
+        settle();
+        // Cordova's own setup is not charged to the plugin
+        view.reset();
+        mainThreadNanos = 0;
+    }
+
+    /**
+     * Create and initialize the plugin, serving assets from the given map
+     */
+    CountingCSSInjector start(Map<String, byte[]> assets) {
+        return start(assets, RecordingWebView.APP_URL);
+    }
+
+    /**
+     * Start the plugin for an app that config.xml's content src serves from launchUrl
+     */
+    CountingCSSInjector start(Map<String, byte[]> assets, String launchUrl) {
+        final CountingCSSInjector plugin = new CountingCSSInjector(assets, launchUrl);
+        onMainThread(() -> plugin.privateInitialize("CSSInjector", cordova, webView, preferences));
+        settle();
+        return plugin;
+    }
+
+    /**
+     * Load url the way the WebView reports it: started, committed, finished
+     */
+    void navigate(final String url) {
+        final WebViewClient client = view.getWebViewClient();
+        onMainThread(() -> {
+            client.onPageStarted(view, url, null);
+            client.onPageCommitVisible(view, url);
+        });
+        settle();
+        onMainThread(() -> client.onPageFinished(view, url));
+        settle();
+    }
+
+    /**
+     * What getMetrics returns to the page, including the injection mode actually in use
+     */
+    JSONObject metrics(CSSInjector plugin) throws JSONException {
+        final JSONObject[] result = new JSONObject[1];
+        plugin.execute("getMetrics", new JSONArray(), new CallbackContext("metrics", webView) {
+            @Override
+            public void success(JSONObject message) {
+                result[0] = message;
+            }
+        });
+        return result[0];
+    }
+
+    WebResourceResponse request(String url, boolean mainFrame) {
+        return view.getWebViewClient().shouldInterceptRequest(view, new FakeRequest(url, mainFrame));
+    }
+
+    void onMainThread(Runnable task) {
+        long start = threads.getCurrentThreadCpuTime();
+        task.run();
+        mainThreadNanos += threads.getCurrentThreadCpuTime() - start;
+    }
+
+    /**
+     * Let background reads and main-thread tasks, delayed ones included, run out.
+     * Only the tasks themselves are timed, not the clock steps between them.
+     */
+    void settle() {
+        ShadowLooper looper = shadowOf(Looper.getMainLooper());
+        for (int round = 0; round < SETTLE_ROUNDS; round++) {
+            awaitThreadPool();
+            while (!looper.isIdle()) {
+                onMainThread(looper::runOneTask);
+            }
+            ShadowSystemClock.advanceBy(SETTLE_STEP);
+        }
+        awaitThreadPool();
+    }
+
+    private void awaitThreadPool() {
+        try {
+            threadPool.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError("Thread pool did not drain", e);
+        }
+    }
+
+    double mainThreadMillis() {
+        return mainThreadNanos / 1_000_000.0;
+    }
+
+    /**
+     * Start counting JS calls, bridge bytes and main-thread time for a new navigation
+     */
+    void resetCounters() {
+        view.reset();
+        mainThreadNanos = 0;
+    }
+
+    void shutdown() {
+        threadPool.shutdownNow();
+    }
+
+    /**
+     * Cordova needs an AppCompat activity
+     */
+    public static final class TestActivity extends AppCompatActivity {
+
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            setTheme(androidx.appcompat.R.style.Theme_AppCompat_Light_NoActionBar);
+            super.onCreate(savedInstanceState);
+        }
+    }
+
+    /**
+     * CSSInjector reading assets from memory and recording every path it opens,
+ * with the launch URL given instead of one from config.xml
+     */
+    static final class CountingCSSInjector extends CSSInjector {
+
+        private final Map<String, byte[]> assets;
+        private final String launchUrl;
+        private final List<String> reads = Collections.synchronizedList(new ArrayList<String>());
+
+        CountingCSSInjector(Map<String, byte[]> assets, String launchUrl) {
+            this.assets = assets;
+            this.launchUrl = launchUrl;
+        }
+
+        @Override
+        String readLaunchUrl() {
+            return launchUrl;
+        }
+
+        @Override
+        InputStream openAsset(String path) throws IOException {
+            reads.add(path);
+            byte[] content = assets.get(path);
+            if (content == null) {
+                throw new FileNotFoundException(path);
+            }
+            return new ByteArrayInputStream(content);
+        }
+
+        List<String> assetReads() {
+            synchronized (reads) {
+                return new ArrayList<>(reads);
+            }
+        }
+    }
+
+    private static final class FakeRequest implements WebResourceRequest {
+
+        private final Uri url;
+        private final boolean mainFrame;
+
+        FakeRequest(String url, boolean mainFrame) {
+            this.url = Uri.parse(url);
+            this.mainFrame = mainFrame;
+        }
+
+        @Override
+        public Uri getUrl() {
+            return url;
+        }
+
+        @Override
+        public boolean isForMainFrame() {
+            return mainFrame;
+        }
+
+        @Override
+        public boolean isRedirect() {
+            return false;
+        }
+
+        @Override
+        public boolean hasGesture() {
+            return false;
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public Map<String, String> getRequestHeaders() {
+            return Collections.emptyMap();
+        }
+    }
+}
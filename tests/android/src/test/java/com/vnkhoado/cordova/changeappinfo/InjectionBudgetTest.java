@@ -0,0 +1,330 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hard budgets for what CSSInjector costs the page and the UI thread, per
+ * injection mode. The launch counts as the first navigation.
+ * A budget is only ever raised here, in review, never as a side effect of a feature.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class InjectionBudgetTest {
+
+    // loadUrl/evaluateJavascript calls per navigation
+    private static final int JS_CALLS_POLLING = 11;
+    private static final int JS_CALLS_LIFECYCLE = 2;
+    private static final int JS_CALLS_INTERCEPT = 2;
+    // Catch-up injection for a page that started before the script was registered
+    private static final int JS_CALLS_DOCUMENT_START = 1;
+    // UTF-8 bytes sent to the page per navigation
+    private static final long BRIDGE_BYTES = 512 * 1024;
+    // Thread CPU time of plugin callbacks and looper tasks per navigation, on a warm JVM
+    private static final double MAIN_THREAD_MS = 16;
+    // Asset reads during a launch, every optional feature enabled
+    private static final int LAUNCH_ASSET_READS = 4;
+
+    private static final String CDN_RESOURCE = "https://cdn.example.com/app.css";
+    private static final String APP_JS = "js/app.js";
+    private static final String APP_JS_HASH = "0123456789abcdef";
+
+    private final List<FakeCordova> started = new ArrayList<>();
+
+    @After
+    public void shutdown() {
+        for (FakeCordova fake : started) {
+            fake.shutdown();
+        }
+    }
+
+    @Test
+    public void pollingStopsAtTheFirstConfirmation() {
+        FakeCordova fake = launch("polling");
+
+        assertEquals(1, fake.view.jsCalls());
+        assertWithinNavigationBudgets(fake, JS_CALLS_POLLING);
+    }
+
+    @Test
+    public void pollingStaysWithinBudgetWhenNeverConfirmed() {
+        warmUp("polling");
+        FakeCordova fake = cordova("polling");
+        fake.view.answerAlways(RecordingWebView.presence(RecordingWebView.APP_URL, false));
+        FakeCordova.CountingCSSInjector plugin = fake.start(assets());
+        fake.onMainThread(() -> plugin.onResume(false));
+        fake.settle();
+
+        assertEquals(JS_CALLS_POLLING, fake.view.jsCalls());
+        assertWithinNavigationBudgets(fake, JS_CALLS_POLLING);
+    }
+
+    @Test
+    public void pollingIgnoresTheInitialEmptyDocument() {
+        FakeCordova fake = cordova("polling");
+        fake.view.answerNext(RecordingWebView.presence("about:blank", true));
+        fake.start(assets());
+
+        assertEquals(2, fake.view.jsCalls());
+    }
+
+    @Test
+    public void pollingConfirmsAnAppServedFromItsLaunchUrl() {
+        String launchUrl = "https://app.example.com/index.html";
+        FakeCordova fake = cordova("polling");
+        fake.view.answerAlways(RecordingWebView.presence(launchUrl, true));
+        fake.start(assets(), launchUrl);
+
+        assertEquals(1, fake.view.jsCalls());
+    }
+
+    @Test
+    public void documentStartFallsBackToPollingForAFileUrl() throws JSONException {
+        FakeCordova fake = cordova("documentStart");
+        fake.view.answerAlways(RecordingWebView.presence("file:///android_asset/www/index.html", true));
+        FakeCordova.CountingCSSInjector plugin = fake.start(assets(), "file:///android_asset/www/index.html");
+
+        assertEquals("polling", fake.metrics(plugin).getString("mode"));
+        assertEquals(1, fake.view.jsCalls());
+    }
+
+    @Test
+    public void lifecycleInjectsOncePerNavigation() {
+        FakeCordova fake = launch("lifecycle");
+        for (int page = 0; page < 3; page++) {
+            fake.resetCounters();
+            fake.navigate(RecordingWebView.APP_URL);
+
+            assertEquals(1, fake.view.jsCalls());
+            assertWithinNavigationBudgets(fake, JS_CALLS_LIFECYCLE);
+        }
+    }
+
+    @Test
+    public void lifecycleAcceptsAnAnswerWhileThePageIsLoading() {
+        FakeCordova fake = launch("lifecycle");
+        // Injection at commit runs before the parser is done with index.html
+        fake.view.answerAlways(RecordingWebView.presence(RecordingWebView.APP_URL, true, "loading"));
+        for (int page = 0; page < 3; page++) {
+            fake.resetCounters();
+            fake.navigate(RecordingWebView.APP_URL);
+
+            assertEquals(1, fake.view.jsCalls());
+            assertWithinNavigationBudgets(fake, JS_CALLS_LIFECYCLE);
+        }
+    }
+
+    @Test
+    public void lifecycleRetriesOnlyAfterANegativeOrMissingAck() {
+        FakeCordova fake = launch("lifecycle");
+
+        fake.resetCounters();
+        fake.view.answerNext(RecordingWebView.presence(RecordingWebView.APP_URL, false));
+        fake.navigate(RecordingWebView.APP_URL);
+        assertEquals(2, fake.view.jsCalls());
+        assertWithinNavigationBudgets(fake, JS_CALLS_LIFECYCLE);
+
+        fake.resetCounters();
+        fake.view.answerNext(null);
+        fake.navigate(RecordingWebView.APP_URL);
+        assertEquals(2, fake.view.jsCalls());
+        assertWithinNavigationBudgets(fake, JS_CALLS_LIFECYCLE);
+    }
+
+    @Test
+    public void virtualStylesheetIsImmutableOnlyForItsOwnVersion() throws IOException {
+        FakeCordova fake = launch("lifecycle");
+        byte[] css = assets().get("www/assets/cdn-styles.css");
+        String url = "https://localhost/__cssinjector__/cdn-styles.css?v=";
+
+        WebResourceResponse current = fake.request(url + InjectionPayloadCache.contentHash(css), false);
+        assertNotNull(current);
+        assertEquals("public, max-age=31536000, immutable", current.getResponseHeaders().get("Cache-Control"));
+        assertEquals(new String(css, StandardCharsets.UTF_8), read(current.getData()));
+
+        // A page from before a CDN refresh asks for the version it was built with
+        WebResourceResponse stale = fake.request(url + "0123456789abcdef", false);
+        assertNotNull(stale);
+        assertEquals("no-cache", stale.getResponseHeaders().get("Cache-Control"));
+        assertEquals(new String(css, StandardCharsets.UTF_8), read(stale.getData()));
+    }
+
+    @Test
+    public void interceptServesTheHeadWithoutBridgeCalls() throws IOException {
+        FakeCordova fake = launch("intercept");
+        for (int page = 0; page < 3; page++) {
+            fake.resetCounters();
+            WebResourceResponse index = fake.request(RecordingWebView.APP_URL, true);
+            assertNotNull(index);
+            String html = read(index.getData());
+            assertTrue(html.contains("CORDOVA_BUILD_CONFIG"));
+            fake.navigate(RecordingWebView.APP_URL);
+
+            assertEquals(0, fake.view.jsCalls());
+            assertWithinNavigationBudgets(fake, JS_CALLS_INTERCEPT);
+        }
+    }
+
+    @Test
+    public void documentStartStaysWithinTheBudgetOfTheModeItRunsIn() throws JSONException {
+        warmUp("documentStart");
+        FakeCordova fake = cordova("documentStart");
+        FakeCordova.CountingCSSInjector plugin = fake.start(assets());
+        fake.onMainThread(() -> plugin.onResume(false));
+        fake.settle();
+
+        // Without DOCUMENT_START_SCRIPT the plugin polls, and is held to the polling budget
+        String mode = fake.metrics(plugin).getString("mode");
+        assertWithinNavigationBudgets(fake, jsCallBudget(mode));
+        if ("polling".equals(mode)) {
+            assertEquals(1, fake.view.jsCalls());
+        }
+    }
+
+    @Test
+    public void launchStaysWithinAssetReads() {
+        for (String mode : new String[] {"polling", "lifecycle", "intercept"}) {
+            Map<String, String> preferences = preferences(mode);
+            preferences.put("CDN_RESOURCE", CDN_RESOURCE);
+            preferences.put("ASSET_FINGERPRINTING", "true");
+            FakeCordova fake = cordova(preferences);
+            FakeCordova.CountingCSSInjector plugin = fake.start(assets());
+
+            List<String> reads = plugin.assetReads();
+            assertTrue(mode + " read " + reads, reads.size() <= LAUNCH_ASSET_READS);
+        }
+    }
+
+    @Test
+    public void fingerprintManifestIsReadOnceOnFirstUse() throws IOException {
+        Map<String, String> preferences = preferences("polling");
+        preferences.put("ASSET_FINGERPRINTING", "true");
+        FakeCordova fake = cordova(preferences);
+        FakeCordova.CountingCSSInjector plugin = fake.start(assets());
+        assertEquals(0, Collections.frequency(plugin.assetReads(), "www/asset-manifest.json"));
+
+        for (int i = 0; i < 3; i++) {
+            WebResourceResponse asset = fake.request("https://localhost/" + APP_JS + "?v=" + APP_JS_HASH, false);
+            assertNotNull(asset);
+            assertEquals("console.log('app');", read(asset.getData()));
+        }
+        assertEquals(1, Collections.frequency(plugin.assetReads(), "www/asset-manifest.json"));
+    }
+
+    private FakeCordova launch(String mode) {
+        warmUp(mode);
+        FakeCordova fake = cordova(mode);
+        fake.start(assets());
+        return fake;
+    }
+
+    /**
+     * A first launch loads classes and warms the JIT, so only plugin work is measured after it
+     */
+    private void warmUp(String mode) {
+        FakeCordova fake = cordova(mode);
+        fake.start(assets());
+        fake.navigate(RecordingWebView.APP_URL);
+    }
+
+    private FakeCordova cordova(String mode) {
+        return cordova(preferences(mode));
+    }
+
+    private FakeCordova cordova(Map<String, String> preferences) {
+        FakeCordova fake = new FakeCordova(preferences);
+        started.add(fake);
+        return fake;
+    }
+
+    private static Map<String, String> preferences(String mode) {
+        Map<String, String> preferences = new HashMap<>();
+        preferences.put("CSS_INJECTION_MODE", mode);
+        preferences.put("WEBVIEW_BACKGROUND_COLOR", "#1A1A2E");
+        return preferences;
+    }
+
+    private static int jsCallBudget(String mode) {
+        switch (mode) {
+            case "polling":
+                return JS_CALLS_POLLING;
+            case "lifecycle":
+                return JS_CALLS_LIFECYCLE;
+            case "intercept":
+                return JS_CALLS_INTERCEPT;
+            case "documentstart":
+                return JS_CALLS_DOCUMENT_START;
+            default:
+                throw new AssertionError("Unknown injection mode " + mode);
+        }
+    }
+
+    private static void assertWithinNavigationBudgets(FakeCordova fake, int maxJsCalls) {
+        assertTrue(fake.view.jsCalls() + " JS calls (budget " + maxJsCalls + ")",
+            fake.view.jsCalls() <= maxJsCalls);
+        assertTrue(fake.view.bridgeBytes() + " bytes sent to the page (budget " + BRIDGE_BYTES + ")",
+            fake.view.bridgeBytes() <= BRIDGE_BYTES);
+        assertTrue(fake.mainThreadMillis() + "ms CPU on the main thread (budget " + MAIN_THREAD_MS + "ms)",
+            fake.mainThreadMillis() <= MAIN_THREAD_MS);
+    }
+
+    /**
+     * What the hooks bundle for a typical app: a 20 KB split stylesheet,
+     * a 200-key config, CDN assets and a fingerprinted index.html
+     */
+    private static Map<String, byte[]> assets() {
+        Map<String, byte[]> assets = new HashMap<>();
+        StringBuilder css = new StringBuilder("/*cssinjector:critical*/");
+        for (int rule = 0; css.length() < 20 * 1024; rule++) {
+            css.append(".c").append(rule).append("{color:#123456;margin:0 auto;padding:4px}");
+        }
+        assets.put("www/assets/cdn-styles.css", utf8(css.toString()));
+        assets.put("www/assets/cdn-styles.critical.css", utf8("html,body{margin:0}.splash{background:#1a1a2e}"));
+
+        StringBuilder config = new StringBuilder("{\"appName\":\"Budget\"");
+        for (int key = 0; key < 200; key++) {
+            config.append(",\"key").append(key).append("\":\"value ").append(key).append('"');
+        }
+        assets.put("www/cordova-build-config.json", utf8(config.append('}').toString()));
+
+        assets.put("www/assets/cdn/manifest.json", utf8("{\"https://cdn.example.com/font.woff2\":" +
+            "{\"file\":\"fedcba9876543210.woff2\",\"type\":\"font/woff2\",\"bytes\":4}}"));
+        assets.put("www/asset-manifest.json", utf8("{\"" + APP_JS + "\":" +
+            "{\"hash\":\"" + APP_JS_HASH + "\",\"type\":\"text/javascript\",\"bytes\":19}}"));
+        assets.put("www/" + APP_JS, utf8("console.log('app');"));
+        assets.put("www/index.html", utf8("<!DOCTYPE html><html><head><title>Budget</title></head>" +
+            "<body><div class=\"splash\"></div><script src=\"" + APP_JS + "?v=" + APP_JS_HASH + "\"></script></body></html>"));
+        return assets;
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        try {
+            return new String(InjectionCore.readFully(stream, stream.available()), StandardCharsets.UTF_8);
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.vnkhoado.cordova.changeappinfo;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.webkit.ValueCallback;
+
+import org.apache.cordova.engine.SystemWebView;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * SystemWebView that records every script the plugin sends instead of running it.
+ * evaluateJavascript is answered with the queued presence results, then with
+ * the default one; a null answer means the page never acknowledges.
+ */
+final class RecordingWebView extends SystemWebView {
+
+    static final String APP_URL = "https://localhost/index.html";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<String> scripts = new ArrayList<>();
+    private final Deque<String> answers = new ArrayDeque<>();
+    private String defaultAnswer = presence(APP_URL, true);
+
+    RecordingWebView(Context context) {
+        super(context);
+    }
+
+    /**
+     * Presence check result as the page would return it
+     */
+    static String presence(String href, boolean present) {
+        return presence(href, present, "complete");
+    }
+
+    static String presence(String href, boolean present, String readyState) {
+        return "{\"href\":\"" + href + "\",\"state\":\"" + readyState + "\"," +
+            "\"config\":" + present + ",\"bg\":" + present + ",\"css\":" + present + "}";
+    }
+
+    void answerNext(String answer) {
+        answers.add(answer);
+    }
+
+    void answerAlways(String answer) {
+        defaultAnswer = answer;
+    }
+
+    @Override
+    public void evaluateJavascript(String script, ValueCallback<String> resultCallback) {
+        scripts.add(script);
+        final String answer = answers.isEmpty() ? defaultAnswer : answers.poll();
+        if (resultCallback != null && answer != null) {
+            mainHandler.post(() -> resultCallback.onReceiveValue(answer));
+        }
+    }
+
+    @Override
+    public void loadUrl(String url) {
+        if (url.startsWith("javascript:")) {
+            scripts.add(url.substring("javascript:".length()));
+            return;
+        }
+        super.loadUrl(url);
+    }
+
+    /**
+     * loadUrl("javascript:...") and evaluateJavascript calls since the last reset
+     */
+    int jsCalls() {
+        return scripts.size();
+    }
+
+    /**
+     * UTF-8 bytes sent to the page since the last reset
+     */
+    long bridgeBytes() {
+        long bytes = 0;
+        for (String script : scripts) {
+            bytes += script.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return bytes;
+    }
+
+    void reset() {
+        scripts.clear();
+    }
+}
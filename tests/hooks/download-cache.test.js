@@ -0,0 +1,210 @@
+/**
+ * Download cache against a local HTTP server: 304 reuse with ETag and
+ * Last-Modified, the shared download slots and what a failed download
+ * leaves in the cache.
+ *
+ * Run: node --test tests/hooks
+ */
+
+const test = require('node:test');
+const assert = require('node:assert');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const http = require('http');
+
+const downloader = require('../../hooks/utils/download-cache');
+
+function startServer(handler) {
+  return new Promise((resolve) => {
+    const server = http.createServer(handler);
+    server.listen(0, '127.0.0.1', () => {
+      server.baseUrl = `http://127.0.0.1:${server.address().port}`;
+      resolve(server);
+    });
+  });
+}
+
+function stopServer(server) {
+  server.closeAllConnections();
+  return new Promise((resolve) => server.close(resolve));
+}
+
+function tempProject() {
+  return fs.mkdtempSync(path.join(os.tmpdir(), 'download-cache-'));
+}
+
+function cacheFiles(projectRoot) {
+  try {
+    return fs.readdirSync(downloader.getCacheDir(projectRoot));
+  } catch (e) {
+    return [];
+  }
+}
+
+test('ETag: 304 reuses the cached file', async () => {
+  const requests = [];
+  const server = await startServer((req, res) => {
+    requests.push(req.headers['if-none-match'] || null);
+    if (req.headers['if-none-match'] === '"v1"') {
+      res.writeHead(304);
+      res.end();
+      return;
+    }
+    res.writeHead(200, { 'Content-Type': 'text/css', ETag: '"v1"' });
+    res.end('.a{color:red}');
+  });
+  const projectRoot = tempProject();
+  try {
+    const first = await downloader.download(`${server.baseUrl}/app.css`, { projectRoot });
+    const second = await downloader.download(`${server.baseUrl}/app.css`, { projectRoot });
+
+    assert.strictEqual(first.fromCache, false);
+    assert.strictEqual(second.fromCache, true);
+    assert.strictEqual(second.file, first.file);
+    assert.strictEqual(second.contentType, 'text/css');
+    assert.strictEqual(fs.readFileSync(second.file, 'utf8'), '.a{color:red}');
+    assert.deepStrictEqual(requests, [null, '"v1"']);
+  } finally {
+    await stopServer(server);
+  }
+});
+
+test('Last-Modified: 304 reuses the cached file', async () => {
+  const lastModified = 'Wed, 21 Oct 2015 07:28:00 GMT';
+  const requests = [];
+  const server = await startServer((req, res) => {
+    requests.push(req.headers['if-modified-since'] || null);
+    if (req.headers['if-modified-since'] === lastModified) {
+      res.writeHead(304);
+      res.end();
+      return;
+    }
+    res.writeHead(200, { 'Last-Modified': lastModified });
+    res.end('icon');
+  });
+  const projectRoot = tempProject();
+  try {
+    await downloader.download(`${server.baseUrl}/icon.png`, { projectRoot });
+    const second = await downloader.downloadBuffer(`${server.baseUrl}/icon.png`, { projectRoot });
+
+    assert.strictEqual(second.toString(), 'icon');
+    assert.deepStrictEqual(requests, [null, lastModified]);
+  } finally {
+    await stopServer(server);
+  }
+});
+
+test('cached copy is used when the network fails', async () => {
+  let fail = false;
+  const server = await startServer((req, res) => {
+    if (fail) {
+      res.writeHead(500);
+      res.end();
+      return;
+    }
+    res.writeHead(200);
+    res.end('cached');
+  });
+  const projectRoot = tempProject();
+  try {
+    await downloader.download(`${server.baseUrl}/app.css`, { projectRoot });
+    fail = true;
+    const result = await downloader.downloadString(`${server.baseUrl}/app.css`, { projectRoot });
+
+    assert.strictEqual(result, 'cached');
+  } finally {
+    await stopServer(server);
+  }
+});
+
+test('same URL in flight twice makes one request', async () => {
+  let requests = 0;
+  const server = await startServer((req, res) => {
+    requests++;
+    setTimeout(() => res.end('shared'), 50);
+  });
+  const projectRoot = tempProject();
+  try {
+    const url = `${server.baseUrl}/shared.css`;
+    const [first, second] = await Promise.all([
+      downloader.download(url, { projectRoot }),
+      downloader.download(url, { projectRoot })
+    ]);
+
+    assert.strictEqual(requests, 1);
+    assert.strictEqual(first, second);
+  } finally {
+    await stopServer(server);
+  }
+});
+
+test(`at most ${downloader.MAX_CONCURRENT_DOWNLOADS} downloads are in flight`, async () => {
+  let active = 0;
+  let maxActive = 0;
+  let requests = 0;
+  const server = await startServer((req, res) => {
+    requests++;
+    active++;
+    maxActive = Math.max(maxActive, active);
+    setTimeout(() => {
+      active--;
+      res.end(req.url);
+    }, 50);
+  });
+  const projectRoot = tempProject();
+  try {
+    const urls = Array.from({ length: 20 }, (_, i) => `${server.baseUrl}/asset-${i}.png`);
+    const results = await Promise.all(urls.map((url) => downloader.downloadString(url, { projectRoot })));
+
+    assert.strictEqual(requests, urls.length);
+    assert.strictEqual(maxActive, downloader.MAX_CONCURRENT_DOWNLOADS);
+    assert.deepStrictEqual(results, urls.map((url) => new URL(url).pathname));
+  } finally {
+    await stopServer(server);
+  }
+});
+
+test('a truncated download leaves no cache entry', async () => {
+  const server = await startServer((req, res) => {
+    res.writeHead(200, { 'Content-Length': 1000 });
+    res.write('partial');
+    setTimeout(() => res.destroy(), 20);
+  });
+  const projectRoot = tempProject();
+  try {
+    await assert.rejects(downloader.download(`${server.baseUrl}/broken.css`, { projectRoot }));
+
+    assert.deepStrictEqual(cacheFiles(projectRoot), []);
+  } finally {
+    await stopServer(server);
+  }
+});
+
+test('a timed out download leaves no cache entry and keeps the previous copy', async () => {
+  let stall = false;
+  const server = await startServer((req, res) => {
+    if (!stall) {
+      res.end('first');
+      return;
+    }
+    res.writeHead(200, { 'Content-Length': 1000 });
+    res.write('second');
+    // Never finishes: the client timeout has to end it
+  });
+  const projectRoot = tempProject();
+  try {
+    const url = `${server.baseUrl}/slow.css`;
+    await downloader.download(url, { projectRoot });
+    const before = cacheFiles(projectRoot).sort();
+
+    stall = true;
+    const result = await downloader.download(url, { projectRoot, timeout: 100 });
+
+    assert.strictEqual(result.fromCache, true);
+    assert.strictEqual(fs.readFileSync(result.file, 'utf8'), 'first');
+    assert.deepStrictEqual(cacheFiles(projectRoot).sort(), before);
+  } finally {
+    await stopServer(server);
+  }
+});
@@ -0,0 +1,56 @@
+/**
+ * Jimp worker pool: a worker that exits in the middle of a size, without an
+ * 'error' event, fails the render instead of leaving it waiting forever.
+ *
+ * Run: node --test tests/hooks
+ */
+
+const test = require('node:test');
+const assert = require('node:assert');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+
+const renderer = require('../../hooks/utils/icon-renderer');
+
+/**
+ * Jimp stand-in for the worker: decodes fine, then exits with code while writing
+ */
+function exitingJimpModule(dir, code) {
+  const file = path.join(dir, `jimp-exit-${code}.js`);
+  fs.writeFileSync(file, `
+function Jimp(bitmap, callback) {
+  const image = {
+    clone: () => image,
+    resize: () => image,
+    writeAsync: () => process.exit(${code})
+  };
+  callback(null, image);
+}
+module.exports = Jimp;
+`);
+  return file;
+}
+
+// What the hook process decodes the source with
+const Jimp = {
+  read: async () => ({ bitmap: { width: 2, height: 2, data: Buffer.alloc(16) } })
+};
+
+for (const code of [3, 0]) {
+  test(`a worker exiting with code ${code} before its result rejects the render`, async () => {
+    const root = fs.mkdtempSync(path.join(os.tmpdir(), 'icon-renderer-'));
+    const jobs = [48, 72, 96].map((size) => ({ output: path.join(root, 'out', `${size}.png`), size }));
+
+    await assert.rejects(
+      renderer.renderIcons(Buffer.from('icon'), jobs, {
+        Jimp,
+        jimpPath: exitingJimpModule(root, code),
+        root,
+        manifestFile: path.join(root, 'manifest.json')
+      }),
+      new RegExp(`Jimp worker exited with code ${code}`)
+    );
+    assert.ok(!fs.existsSync(path.join(root, 'out')), 'no icons written');
+  });
+}
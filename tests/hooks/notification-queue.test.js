@@ -0,0 +1,155 @@
+/**
+ * Notification queue flush with a stand-in endpoint: sent, retried and left
+ * pending, moved to failed/, claims of a dead flush released, and a wait
+ * that never outlasts its bound.
+ *
+ * Run: node --test tests/hooks
+ */
+
+const test = require('node:test');
+const assert = require('node:assert');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { spawnSync } = require('child_process');
+
+const queue = require('../../hooks/utils/notification-queue');
+
+const API_URL = 'https://api.example.com/builds?version=1.0.0';
+
+function tempQueue() {
+  return queue.getQueueDir(fs.mkdtempSync(path.join(os.tmpdir(), 'notification-queue-')));
+}
+
+function readEntry(queueDir, id) {
+  return JSON.parse(fs.readFileSync(path.join(queueDir, `${id}.json`), 'utf8'));
+}
+
+function httpError(statusCode) {
+  const error = new Error(`API returned status ${statusCode}`);
+  error.statusCode = statusCode;
+  return error;
+}
+
+/**
+ * Endpoint answering with results in turn; an Error is thrown, anything else is sent
+ */
+function endpoint(...results) {
+  const calls = [];
+  const post = async (url, token, body) => {
+    calls.push({ url, token, body });
+    const result = results.length > 1 ? results.shift() : results[0];
+    if (result instanceof Error) {
+      throw result;
+    }
+    return { statusCode: result, data: '' };
+  };
+  post.calls = calls;
+  return post;
+}
+
+function flush(queueDir, post, options = {}) {
+  return queue.flush(queueDir, Object.assign({
+    token: 'token',
+    post,
+    baseDelayMs: 1,
+    maxDelayMs: 1,
+    log: () => {}
+  }, options));
+}
+
+test('sent entries leave the queue', async () => {
+  const queueDir = tempQueue();
+  const id = queue.enqueue(queueDir, API_URL, { app_platform: 'android' });
+  const post = endpoint(201);
+
+  const summary = await flush(queueDir, post);
+
+  assert.deepStrictEqual(summary, { sent: 1, failed: 0, pending: 0 });
+  assert.deepStrictEqual(post.calls, [{ url: API_URL, token: 'token', body: { app_platform: 'android' } }]);
+  assert.deepStrictEqual((await queue.waitForEntries(queueDir, [id], 0)).sent, [id]);
+});
+
+test('a failing endpoint is retried, then the entry stays queued', async () => {
+  const queueDir = tempQueue();
+  const id = queue.enqueue(queueDir, API_URL, {});
+  const post = endpoint(new Error('Network error: ECONNRESET'), httpError(503), httpError(429));
+
+  const summary = await flush(queueDir, post, { attemptsPerFlush: 3 });
+
+  assert.deepStrictEqual(summary, { sent: 0, failed: 0, pending: 1 });
+  assert.strictEqual(post.calls.length, 3);
+  const entry = readEntry(queueDir, id);
+  assert.strictEqual(entry.attempts, 3);
+  assert.strictEqual(entry.lastError, 'API returned status 429');
+
+  const retried = await flush(queueDir, endpoint(200));
+  assert.deepStrictEqual(retried, { sent: 1, failed: 0, pending: 0 });
+});
+
+test('entries move to failed/ after maxAttempts', async () => {
+  const queueDir = tempQueue();
+  const id = queue.enqueue(queueDir, API_URL, {});
+  const post = endpoint(httpError(500));
+
+  assert.deepStrictEqual(await flush(queueDir, post, { attemptsPerFlush: 2, maxAttempts: 3 }),
+    { sent: 0, failed: 0, pending: 1 });
+  assert.deepStrictEqual(await flush(queueDir, post, { attemptsPerFlush: 2, maxAttempts: 3 }),
+    { sent: 0, failed: 1, pending: 0 });
+
+  assert.strictEqual(post.calls.length, 3);
+  assert.deepStrictEqual((await queue.waitForEntries(queueDir, [id], 0)).failed, [id]);
+});
+
+test('a 4xx other than 408/429 fails at once', async () => {
+  for (const status of [400, 401, 403, 404, 422]) {
+    const queueDir = tempQueue();
+    const id = queue.enqueue(queueDir, API_URL, {});
+    const post = endpoint(httpError(status));
+
+    const summary = await flush(queueDir, post);
+
+    assert.deepStrictEqual(summary, { sent: 0, failed: 1, pending: 0 }, `status ${status}`);
+    assert.strictEqual(post.calls.length, 1, `status ${status}`);
+    const failed = JSON.parse(fs.readFileSync(path.join(queueDir, 'failed', `${id}.json`), 'utf8'));
+    assert.strictEqual(failed.attempts, 1);
+  }
+});
+
+test('408 and 429 are retried', async () => {
+  const queueDir = tempQueue();
+  queue.enqueue(queueDir, API_URL, {});
+  const post = endpoint(httpError(408), httpError(429), 200);
+
+  assert.deepStrictEqual(await flush(queueDir, post), { sent: 1, failed: 0, pending: 0 });
+  assert.strictEqual(post.calls.length, 3);
+});
+
+test('claims of a flush that died are released, live ones are left alone', async () => {
+  const queueDir = tempQueue();
+  const deadPid = spawnSync(process.execPath, ['-e', '']).pid;
+  const stale = queue.enqueue(queueDir, API_URL, {});
+  const live = queue.enqueue(queueDir, API_URL, {});
+  fs.renameSync(path.join(queueDir, `${stale}.json`), path.join(queueDir, `${stale}.json.${deadPid}.sending`));
+  fs.renameSync(path.join(queueDir, `${live}.json`), path.join(queueDir, `${live}.json.${process.pid}.sending`));
+  const post = endpoint(200);
+
+  const summary = await flush(queueDir, post);
+
+  assert.deepStrictEqual(summary, { sent: 1, failed: 0, pending: 0 });
+  const state = await queue.waitForEntries(queueDir, [stale, live], 0);
+  assert.deepStrictEqual(state.sent, [stale]);
+  assert.deepStrictEqual(state.pending, [live]);
+});
+
+test('waitForEntries never waits longer than asked', async () => {
+  const queueDir = tempQueue();
+  const id = queue.enqueue(queueDir, API_URL, {});
+
+  const start = Date.now();
+  const state = await queue.waitForEntries(queueDir, [id], 300);
+  const elapsed = Date.now() - start;
+
+  assert.deepStrictEqual(state.pending, [id]);
+  assert.ok(elapsed >= 300 && elapsed < 500, `waited ${elapsed}ms`);
+});
@@ -0,0 +1,144 @@
+/**
+ * sendBuildSuccess.js against a stand-in endpoint on localhost that stalls or
+ * keeps failing: the hook returns within BUILD_NOTIFICATION_WAIT_MS (plus a
+ * margin) while the detached flush it started keeps trying.
+ *
+ * Run: node --test tests/hooks
+ */
+
+const test = require('node:test');
+const assert = require('node:assert');
+const fs = require('fs');
+const http = require('http');
+const os = require('os');
+const path = require('path');
+
+const sendBuildSuccess = require('../../hooks/sendBuildSuccess');
+const queue = require('../../hooks/utils/notification-queue');
+
+const WAIT_MS = 1500;
+// Spawning the flush process and the last queue poll
+const MARGIN_MS = 1000;
+
+/**
+ * Stand-in API: respond(req, res) decides what each request gets
+ */
+async function startEndpoint(respond) {
+  const server = http.createServer((req, res) => {
+    server.requests++;
+    req.resume();
+    respond(req, res);
+  });
+  server.requests = 0;
+  await new Promise((resolve) => server.listen(0, '127.0.0.1', resolve));
+  return server;
+}
+
+function stopEndpoint(server) {
+  server.closeAllConnections();
+  return new Promise((resolve) => server.close(resolve));
+}
+
+function project(apiUrl) {
+  const root = fs.mkdtempSync(path.join(os.tmpdir(), 'send-build-success-'));
+  const backupDir = path.join(root, '.cordova-build-backup');
+  fs.mkdirSync(backupDir);
+  fs.writeFileSync(path.join(backupDir, 'app-info-backup.json'), JSON.stringify({
+    apiHostname: 'app.example.com',
+    mabsAppName: 'Example',
+    platforms: { android: { versionNumber: '1.0.0' } }
+  }));
+
+  const preferences = {
+    ENABLE_BUILD_NOTIFICATION: 'true',
+    BUILD_SUCCESS_API_URL: apiUrl,
+    BUILD_API_BEARER_TOKEN: 'token',
+    BUILD_NOTIFICATION_WAIT_MS: String(WAIT_MS)
+  };
+  class ConfigParser {
+    getPreference(name) { return preferences[name]; }
+    name() { return 'Example'; }
+    version() { return '1.0.0'; }
+    packageName() { return 'com.example.app'; }
+  }
+  return {
+    opts: { projectRoot: root, platforms: ['android'] },
+    requireCordovaModule: () => ({ ConfigParser })
+  };
+}
+
+/**
+ * Run the hook with its console output held back; resolves to how long it took
+ */
+async function runHook(context) {
+  const log = console.log;
+  console.log = () => {};
+  const start = Date.now();
+  try {
+    await sendBuildSuccess(context);
+  } finally {
+    console.log = log;
+  }
+  return Date.now() - start;
+}
+
+async function waitFor(condition, timeoutMs) {
+  const end = Date.now() + timeoutMs;
+  while (!condition() && Date.now() < end) {
+    await new Promise((resolve) => setTimeout(resolve, 50));
+  }
+  return condition();
+}
+
+/**
+ * Stop the detached flush: its pid is in the name of the entry it claimed
+ */
+function killFlush(queueDir) {
+  for (const file of fs.readdirSync(queueDir)) {
+    const match = file.match(/\.json\.(\d+)\.sending$/);
+    if (match) {
+      try {
+        process.kill(Number(match[1]));
+      } catch (e) {
+        // Already gone
+      }
+    }
+  }
+}
+
+test('a stalled endpoint does not hold up the build', async () => {
+  const server = await startEndpoint(() => {});
+  const context = project(`http://127.0.0.1:${server.address().port}/builds`);
+  const queueDir = queue.getQueueDir(context.opts.projectRoot);
+  try {
+    const elapsed = await runHook(context);
+
+    assert.ok(elapsed < WAIT_MS + MARGIN_MS, `hook took ${elapsed}ms`);
+    assert.strictEqual(server.requests, 1);
+    assert.ok(fs.readdirSync(queueDir).some((file) => file.endsWith('.sending')), 'flush still sending');
+  } finally {
+    killFlush(queueDir);
+    await stopEndpoint(server);
+  }
+});
+
+test('a failing endpoint is retried in the background after the build moves on', async () => {
+  const server = await startEndpoint((req, res) => {
+    res.writeHead(503);
+    res.end('unavailable');
+  });
+  const context = project(`http://127.0.0.1:${server.address().port}/builds`);
+  const queueDir = queue.getQueueDir(context.opts.projectRoot);
+  try {
+    const elapsed = await runHook(context);
+    const requestsWhenDone = server.requests;
+
+    assert.ok(elapsed < WAIT_MS + MARGIN_MS, `hook took ${elapsed}ms`);
+    assert.ok(requestsWhenDone >= 1, 'flush started');
+    assert.ok(await waitFor(() => server.requests > requestsWhenDone, 5000),
+      `no retry after the hook returned (${server.requests} requests)`);
+  } finally {
+    killFlush(queueDir);
+    await stopEndpoint(server);
+  }
+});
@@ -21,6 +21,39 @@ var CSSInjector = {
      */
     injectCSS: function(successCallback, errorCallback) {
         exec(successCallback, errorCallback, 'CSSInjector', 'injectCSS', []);
+    },
+
+    /**
+     * Get build config values (Android)
+     * @param {string|string[]} [keys] - Key(s) to return; omit for the whole config
+     * @param {Function} successCallback - Called with an object of the requested keys (unknown keys are left out)
+     * @param {Function} errorCallback - Called if no config is available
+     */
+    getConfig: function(keys, successCallback, errorCallback) {
+        if (typeof keys === 'function') {
+            errorCallback = successCallback;
+            successCallback = keys;
+            keys = null;
+        }
+        exec(successCallback, errorCallback, 'CSSInjector', 'getConfig', keys ? [keys] : []);
+    },
+
+    /**
+     * Get startup injection metrics (Android)
+     * @param {Function} successCallback - Called with { mode, assetReadMs, payloadBuildMs, attempts, attemptMs, firstConfirmedMs, ... }
+     * @param {Function} errorCallback - Called if metrics are unavailable
+     */
+    getMetrics: function(successCallback, errorCallback) {
+        exec(successCallback, errorCallback, 'CSSInjector', 'getMetrics', []);
+    },
+
+    /**
+     * Get first-frame metrics (Android, requires the FRAME_METRICS preference)
+     * @param {Function} successCallback - Called with { source, firstFrameMs, framesBeforeStyled, slowFramesBeforeStyled, styledFirstFrameMs, confirmedMs, complete }
+     * @param {Function} errorCallback - Called if frame metrics are disabled
+     */
+    getFrameMetrics: function(successCallback, errorCallback) {
+        exec(successCallback, errorCallback, 'CSSInjector', 'getFrameMetrics', []);
     }
 };
 